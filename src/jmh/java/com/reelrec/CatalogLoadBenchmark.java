@@ -0,0 +1,73 @@
+package com.reelrec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading and validating a synthetic movies file, into a new RecommendationSystem or
+ * Validator every invocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class CatalogLoadBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int movies;
+
+    private Path directory;
+    private String moviesFile;
+
+    @Setup(Level.Trial)
+    public void writeFile() throws IOException {
+        directory = Files.createTempDirectory("reelrec-bench");
+        Path file = directory.resolve("movies.txt");
+        SyntheticData.writeMovies(file, movies);
+        moviesFile = file.toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        SyntheticData.delete(directory);
+    }
+
+    @Benchmark
+    public RecommendationSystem loadMoviesFromFile() throws IOException {
+        RecommendationSystem recSys = new RecommendationSystem();
+        recSys.loadMoviesFromFile(moviesFile, new BitSet());
+        return recSys;
+    }
+
+    @Benchmark
+    public List<ValidationError> validateMovies() {
+        return new Validator().validateMovies(moviesFile);
+    }
+
+    @Benchmark
+    public RecommendationSystem loadAndValidateMoviesFromFile() {
+        RecommendationSystem recSys = new RecommendationSystem();
+        recSys.loadAndValidateMoviesFromFile(moviesFile, new Validator());
+        return recSys;
+    }
+}
@@ -0,0 +1,53 @@
+package com.reelrec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Movie.compareTo over pairs of synthetic movies, which mostly differ in their ID
+ * letters and sometimes only in their numbers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MovieBenchmark {
+
+    private static final int PAIRS = 1024;
+
+    private final Movie[] left = new Movie[PAIRS];
+    private final Movie[] right = new Movie[PAIRS];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(SyntheticData.SEED);
+        for (int i = 0; i < PAIRS; i++) {
+            int a = random.nextInt(100_000);
+            // Every fourth pair shares its letters
+            int b = i % 4 == 0 ? a / 1000 * 1000 + random.nextInt(1000) : random.nextInt(100_000);
+            left[i] = new Movie(SyntheticData.movieId(a), SyntheticData.movieTitle(a));
+            right[i] = new Movie(SyntheticData.movieId(b), SyntheticData.movieTitle(b));
+        }
+    }
+
+    @Benchmark
+    public int compareTo() {
+        int i = next++ & (PAIRS - 1);
+        return left[i].compareTo(right[i]);
+    }
+}
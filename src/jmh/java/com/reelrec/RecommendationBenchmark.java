@@ -0,0 +1,82 @@
+package com.reelrec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries against a loaded synthetic catalog, cycling through a fixed set of users and
+ * movies so every invocation does comparable work.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class RecommendationBenchmark {
+
+    // Users and movies queried in turn
+    private static final int SAMPLE = 1024;
+
+    @Param({"1000", "100000", "1000000"})
+    public int movies;
+
+    private RecommendationSystem recSys;
+    private User[] users;
+    private Movie[] sampleMovies;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        Path directory = Files.createTempDirectory("reelrec-bench");
+        Path moviesFile = directory.resolve("movies.txt");
+        Path usersFile = directory.resolve("users.txt");
+        SyntheticData.writeMovies(moviesFile, movies);
+        SyntheticData.writeUsers(usersFile, SAMPLE, movies);
+        recSys = new RecommendationSystem();
+        recSys.loadMoviesFromFile(moviesFile.toString(), new BitSet());
+        recSys.loadUsersFromFile(usersFile.toString(), new BitSet(), recSys.getMovieIdMap().keySet());
+        SyntheticData.delete(directory);
+
+        List<User> loaded = recSys.getUsers();
+        users = loaded.toArray(new User[0]);
+        sampleMovies = new Movie[SAMPLE];
+        Random random = new Random(SyntheticData.SEED);
+        for (int i = 0; i < SAMPLE; i++) {
+            sampleMovies[i] = recSys.getMovieById(SyntheticData.movieId(random.nextInt(movies)));
+        }
+    }
+
+    @Benchmark
+    public List<Movie> recommendMoviesForUser() {
+        return recSys.recommendMoviesForUser(users[next++ & (SAMPLE - 1)]);
+    }
+
+    @Benchmark
+    public List<Movie> recommendTop10MoviesForUser() {
+        return recSys.recommendMoviesForUser(users[next++ & (SAMPLE - 1)], 10);
+    }
+
+    @Benchmark
+    public List<Movie> recommendSimilarMovies() {
+        return recSys.recommendSimilarMovies(sampleMovies[next++ & (SAMPLE - 1)]);
+    }
+}
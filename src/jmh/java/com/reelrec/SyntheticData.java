@@ -0,0 +1,105 @@
+package com.reelrec;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes well-formed movies and users files of any size for the benchmarks. The same
+ * counts and seed always give the same files.
+ *
+ * <p>Movie i is titled "Movie" followed by one capitalized word per base-26 digit of
+ * i / 1000, and its ID is those capitals followed by i % 1000, so every ID is unique and
+ * matches its title. Only the first 1000 movies have unique ID numbers, so validating a
+ * larger catalog also exercises the MOVIE_ID_NOT_UNIQUE path. Users have 9-digit IDs and
+ * watch 1 to 5 movies.
+ */
+final class SyntheticData {
+
+    static final long SEED = 42;
+
+    private static final List<String> GENRES = List.of("Action", "Comedy", "Crime", "Documentary", "Drama",
+            "Family", "Horror", "Romance", "SciFi", "Thriller");
+
+    private SyntheticData() {
+    }
+
+    static String movieTitle(int i) {
+        StringBuilder title = new StringBuilder("Movie");
+        for (int rest = i / 1000; rest > 0; rest /= 26) {
+            title.append(' ').append((char) ('A' + rest % 26)).append("ay");
+        }
+        return title.toString();
+    }
+
+    static String movieId(int i) {
+        StringBuilder id = new StringBuilder("M");
+        for (int rest = i / 1000; rest > 0; rest /= 26) {
+            id.append((char) ('A' + rest % 26));
+        }
+        return id.append(String.format("%03d", i % 1000)).toString();
+    }
+
+    static String userName(int i) {
+        StringBuilder name = new StringBuilder("User ");
+        int rest = i;
+        do {
+            name.append((char) ('a' + rest % 26));
+            rest /= 26;
+        } while (rest > 0);
+        return name.toString();
+    }
+
+    static String userId(int i) {
+        return String.format("%09d", i);
+    }
+
+    static void writeMovies(Path file, int movies) throws IOException {
+        Random random = new Random(SEED);
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < movies; i++) {
+                writer.write(movieTitle(i) + "," + movieId(i));
+                writer.newLine();
+                int genres = 1 + random.nextInt(3);
+                for (int g = 0; g < genres; g++) {
+                    if (g > 0) {
+                        writer.write(',');
+                    }
+                    writer.write(GENRES.get(random.nextInt(GENRES.size())));
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    static void writeUsers(Path file, int users, int movies) throws IOException {
+        Random random = new Random(SEED + 1);
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < users; i++) {
+                writer.write(userName(i) + "," + userId(i));
+                writer.newLine();
+                int watched = 1 + random.nextInt(5);
+                for (int w = 0; w < watched; w++) {
+                    if (w > 0) {
+                        writer.write(',');
+                    }
+                    writer.write(movieId(random.nextInt(movies)));
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    // Deletes the files and the directory they were written to
+    static void delete(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,86 @@
+package com.reelrec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a synthetic users file into a RecommendationSystem that has only its movies
+ * loaded; the movies are loaded again before every invocation, outside the measurement.
+ * The largest size needs the 8 GB heap; run one size with e.g. {@code -p users=100000}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Thread)
+public class UserLoadBenchmark {
+
+    @Param({"1000"})
+    public int movies;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int users;
+
+    private Path directory;
+    private String moviesFile;
+    private String usersFile;
+    private Set<String> movieIds;
+    private RecommendationSystem recSys;
+    private Validator validator;
+
+    @Setup(Level.Trial)
+    public void writeFiles() throws IOException {
+        directory = Files.createTempDirectory("reelrec-bench");
+        Path movies = directory.resolve("movies.txt");
+        Path users = directory.resolve("users.txt");
+        SyntheticData.writeMovies(movies, this.movies);
+        SyntheticData.writeUsers(users, this.users, this.movies);
+        moviesFile = movies.toString();
+        usersFile = users.toString();
+    }
+
+    @Setup(Level.Invocation)
+    public void loadMovies() throws IOException {
+        recSys = null; // Let the last invocation's users go first
+        validator = new Validator();
+        recSys = new RecommendationSystem();
+        recSys.loadAndValidateMoviesFromFile(moviesFile, validator);
+        movieIds = validator.getValidMovieIds();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        SyntheticData.delete(directory);
+    }
+
+    @Benchmark
+    public List<User> loadUsersFromFile() throws IOException {
+        recSys.loadUsersFromFile(usersFile, new BitSet(), movieIds);
+        return recSys.getUsers();
+    }
+
+    @Benchmark
+    public List<ValidationError> loadAndValidateUsersFromFile() {
+        return recSys.loadAndValidateUsersFromFile(usersFile, validator);
+    }
+}
@@ -0,0 +1,70 @@
+package com.reelrec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Validator's single-field checks, over a mix of valid and invalid values.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ValidatorBenchmark {
+
+    private static final String[] TITLES = {"The Dark Knight", "Movie Bay Cay", "the Godfather", "2001 A Space Odyssey",
+            "Inception", "12345", "Pulp  Fiction", "Spirited Away"};
+    private static final String[] IDS = {"TDK123", "MBC456", "TG789", "ASO001", "I002", "X003", "PF04", "SA005"};
+    private static final String[] GENRES = {"Action", "COMEDY", "scifi", "Drama", "Western", "Thriller", "", "Horror"};
+    private static final String[] NAMES = {"Alice Smith", "Bob", "Carol  Jones", "Dave9", "Eve Adams", " Frank",
+            "Grace Hopper", "Heidi Klum"};
+    private static final String[] USER_IDS = {"12345678A", "123456789", "1234567", "ABCDEFGHI", "87654321B",
+            "1234567890", "11111111Z", "22222222X"};
+
+    private Validator validator;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        validator = new Validator();
+    }
+
+    @Benchmark
+    public String checkMovieTitle() {
+        return validator.checkMovieTitle(TITLES[next++ & 7]);
+    }
+
+    @Benchmark
+    public String checkMovieId() {
+        int i = next++ & 7;
+        return validator.checkMovieId(IDS[i], TITLES[i]);
+    }
+
+    @Benchmark
+    public String checkMovieGenre() {
+        return validator.checkMovieGenre(GENRES[next++ & 7]);
+    }
+
+    @Benchmark
+    public String checkUserName() {
+        return validator.checkUserName(NAMES[next++ & 7]);
+    }
+
+    @Benchmark
+    public String checkUserId() {
+        return validator.checkUserId(USER_IDS[next++ & 7]);
+    }
+}
@@ -0,0 +1,61 @@
+package com.reelrec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A line of ASCII text read in place from a mapped file. The view is reused by
+ * {@link MappedLineReader}, so it must not be kept; {@link #text} copies out the
+ * parts that are.
+ */
+final class AsciiLine implements CharSequence {
+
+    private final byte[][] scratch; // Shared copy buffer, grown as needed
+    private ByteBuffer buffer;
+    private int from;
+    private int to;
+
+    AsciiLine(byte[][] scratch) {
+        this.scratch = scratch;
+    }
+
+    void reset(ByteBuffer buffer, int from, int to) {
+        this.buffer = buffer;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public int length() {
+        return to - from;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) buffer.get(from + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        AsciiLine sub = new AsciiLine(scratch);
+        sub.reset(buffer, from + start, from + end);
+        return sub;
+    }
+
+    /**
+     * Copies the characters in [start, end) into a new String.
+     */
+    String text(int start, int end) {
+        int length = end - start;
+        if (scratch[0].length < length) {
+            scratch[0] = new byte[Math.max(length, scratch[0].length * 2)];
+        }
+        buffer.get(from + start, scratch[0], 0, length);
+        return new String(scratch[0], 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String toString() {
+        return text(0, length());
+    }
+}
@@ -0,0 +1,591 @@
+package com.reelrec;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dense, read-only view of the movie catalog used by the recommendation queries.
+ * Every movie gets an int ordinal in load order and a bitmask of the genres it is
+ * listed under, and each genre keeps its movies as an array of ordinals, sorted unless
+ * the index came from {@link #of(Map, Map)}. A mask is one long per 64 genres; genres
+ * are told apart by spelling, so a file can list more than the Validator's ten in
+ * different cases. The index also answers {@link RecommendationSystem#getMovieById}, so one published
+ * index holds everything a query reads about movies.
+ *
+ * {@link #withMovie} and {@link #withoutMovie} derive the next index from the latest
+ * one without copying the catalog. The per-movie arrays and the postings have spare
+ * room and are shared with the indexes derived from this one, each of which only reads
+ * the first {@link #size()} movies and {@link #postingSizes} ordinals; a new movie is
+ * appended in place. A removed movie keeps its ordinal but leaves the postings, which
+ * are copied for that, and {@link #compacted()} drops such movies. The ID lookup is
+ * shared too, and only ever gains bindings, so an index keeps finding its own movies.
+ */
+final class CatalogIndex {
+
+    final Movie[] movies;      // by ordinal, only the first size are in this index
+    final long[] genreMasks;   // genres each movie is posted under, maskWords longs per ordinal
+    final int maskWords;       // One unless there are more than 64 genres
+    final int[][] movieGenres; // genre ids of each movie, in the order they were listed
+    final String[] genres;
+    final int[][] postings;    // movie ordinals of each genre, in query order, see of(Map, Map)
+    final int[] postingSizes;  // ordinals of each genre's posting in this index
+
+    private final int size;
+    private final int removed; // Ordinals below size whose movie was removed
+    private final boolean exact; // No removed movies and no spare room
+    private final int movieIds; // IDs bound to a movie, see movieIds()
+    // Shared with the indexes derived from this one, see ordinalOf
+    private final Map<String, Binding> ordinals;
+    private final Map<String, Integer> genreIds;
+
+    // A movie ID's ordinal, from the index that added it until the one that removed it.
+    // Indexes derived in turn remove movies one at a time, so an index's removed count
+    // tells which removals it has seen.
+    private static final class Binding {
+        final int ordinal;
+        final Movie movie; // The movie looked up by the ID, or null if it is not, see Builder.bind
+        final int removedAt; // The removed count of the index without the movie, or 0
+        final Binding previous; // The ID's binding before it was removed and added again
+
+        Binding(int ordinal, Movie movie, int removedAt, Binding previous) {
+            this.ordinal = ordinal;
+            this.movie = movie;
+            this.removedAt = removedAt;
+            this.previous = previous;
+        }
+    }
+
+    private CatalogIndex(Builder builder) {
+        int size = builder.movies.size();
+        this.size = size;
+        this.removed = 0;
+        this.exact = true;
+        this.movies = builder.movies.toArray(new Movie[0]);
+        this.maskWords = builder.maskWords;
+        this.genreMasks = Arrays.copyOf(builder.genreMasks, size * maskWords);
+        this.movieGenres = builder.movieGenres.toArray(new int[0][]);
+        this.genres = builder.genres.toArray(new String[0]);
+        this.postings = new int[genres.length][];
+        for (int genre = 0; genre < genres.length; genre++) {
+            int[] posting = Arrays.copyOf(builder.postings[genre], builder.postingSizes[genre]);
+            if (!builder.postingSorted[genre] && !builder.keepPostingOrder) {
+                Arrays.sort(posting);
+            }
+            postings[genre] = posting;
+        }
+        this.postingSizes = lengths(postings);
+        this.movieIds = builder.byId.size();
+        this.ordinals = new ConcurrentHashMap<>(builder.ordinals.size() * 2);
+        builder.ordinals.forEach((id, ordinal) -> ordinals.put(id, new Binding(ordinal, builder.byId.get(id), 0, null)));
+        this.genreIds = new HashMap<>(builder.genreIds);
+    }
+
+    private CatalogIndex(Movie[] movies, int[][] movieGenres, String[] genres, int[][] postings,
+                         Map<String, Movie> movieIdMap) {
+        this.size = movies.length;
+        this.removed = 0;
+        this.exact = true;
+        this.movies = movies;
+        this.movieGenres = movieGenres;
+        this.genres = genres;
+        this.postings = postings;
+        this.postingSizes = lengths(postings);
+        this.maskWords = maskWords(genres.length);
+        this.genreMasks = new long[movies.length * maskWords];
+        for (int genre = 0; genre < postings.length; genre++) {
+            for (int ordinal : postings[genre]) {
+                genreMasks[ordinal * maskWords + (genre >>> 6)] |= 1L << genre;
+            }
+        }
+        this.ordinals = new ConcurrentHashMap<>(movies.length * 2);
+        int movieIds = 0;
+        for (int ordinal = 0; ordinal < movies.length; ordinal++) {
+            String id = movies[ordinal].getID();
+            Movie movie = movieIdMap.get(id);
+            ordinals.put(id, new Binding(ordinal, movie, 0, null));
+            if (movie != null) {
+                movieIds++;
+            }
+        }
+        this.movieIds = movieIds;
+        this.genreIds = new HashMap<>();
+        for (int genre = 0; genre < genres.length; genre++) {
+            genreIds.put(genres[genre], genre);
+        }
+    }
+
+    private CatalogIndex(Movie[] movies, long[] genreMasks, int maskWords, int[][] movieGenres, int size,
+                         int removed, int movieIds, String[] genres, int[][] postings, int[] postingSizes,
+                         Map<String, Binding> ordinals, Map<String, Integer> genreIds) {
+        this.movies = movies;
+        this.genreMasks = genreMasks;
+        this.maskWords = maskWords;
+        this.movieGenres = movieGenres;
+        this.size = size;
+        this.removed = removed;
+        this.exact = false;
+        this.movieIds = movieIds;
+        this.genres = genres;
+        this.postings = postings;
+        this.postingSizes = postingSizes;
+        this.ordinals = ordinals;
+        this.genreIds = genreIds;
+    }
+
+    // Longs per genre mask for the given number of genres
+    private static int maskWords(int genreCount) {
+        return Math.max(1, (genreCount + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    // Copies the masks of the first count movies to wider ones, in an array with room for capacity movies
+    private static long[] widen(long[] masks, int words, int count, int wider, int capacity) {
+        long[] widened = new long[capacity * wider];
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            System.arraycopy(masks, ordinal * words, widened, ordinal * wider, words);
+        }
+        return widened;
+    }
+
+    private static int[] lengths(int[][] postings) {
+        int[] lengths = new int[postings.length];
+        for (int genre = 0; genre < postings.length; genre++) {
+            lengths[genre] = postings[genre].length;
+        }
+        return lengths;
+    }
+
+    /**
+     * Rebuilds an index from the arrays and movies by ID of one read back from a
+     * {@link CatalogSnapshot}. The postings keep their order; genre masks are derived
+     * from them.
+     */
+    static CatalogIndex of(Movie[] movies, int[][] movieGenres, String[] genres, int[][] postings,
+                           Map<String, Movie> movieIdMap) {
+        return new CatalogIndex(movies, movieGenres, genres, postings, movieIdMap);
+    }
+
+    /**
+     * Indexes the maps passed to {@link RecommendationSystem}'s map constructor.
+     * Ordinals follow the key order of {@code movieCategories}; movies that only
+     * appear in {@code categoryMovies} are numbered after them, and are not looked up by ID.
+     * Each genre's posting keeps the order of its {@code categoryMovies} list, which the
+     * queries return movies in, so it need not be sorted.
+     */
+    static CatalogIndex of(Map<Movie, List<String>> movieCategories, Map<String, List<Movie>> categoryMovies) {
+        Builder builder = new Builder();
+        builder.keepPostingOrder = true;
+        for (Map.Entry<Movie, List<String>> entry : movieCategories.entrySet()) {
+            int ordinal = builder.addMovie(entry.getKey());
+            for (String genre : entry.getValue()) {
+                builder.list(ordinal, builder.genreId(genre));
+            }
+        }
+        for (Map.Entry<String, List<Movie>> entry : categoryMovies.entrySet()) {
+            int genre = builder.genreId(entry.getKey());
+            for (Movie movie : entry.getValue()) {
+                Integer ordinal = builder.ordinals.get(movie.getID());
+                if (ordinal == null) {
+                    ordinal = builder.addMovie(movie);
+                    builder.bind(movie.getID(), null);
+                }
+                builder.post(ordinal, genre);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the ordinal of the given movie, or -1 if it is not in the catalog.
+     */
+    int ordinalOf(Movie movie) {
+        return ordinalOf(movie.getID());
+    }
+
+    int ordinalOf(String movieId) {
+        Binding binding = binding(movieId);
+        return binding == null ? -1 : binding.ordinal;
+    }
+
+    /**
+     * Returns the movie looked up by the given ID, or null if there is none. This is the
+     * last movie added with the ID, which can differ from the one at its ordinal.
+     */
+    Movie movie(String movieId) {
+        Binding binding = binding(movieId);
+        return binding == null ? null : binding.movie;
+    }
+
+    /**
+     * Returns the movies looked up by ID, as a read-only map that stays the same when
+     * later indexes are derived. It iterates in ordinal order.
+     */
+    Map<String, Movie> movieIds() {
+        return new AbstractMap<>() {
+            @Override
+            public Movie get(Object key) {
+                return key instanceof String ? movie((String) key) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public Set<Entry<String, Movie>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Entry<String, Movie>> iterator() {
+                        return new MovieIdIterator();
+                    }
+
+                    @Override
+                    public int size() {
+                        return movieIds;
+                    }
+                };
+            }
+        };
+    }
+
+    // The ordinals whose movie this index looks up by its ID, in order
+    private final class MovieIdIterator implements Iterator<Map.Entry<String, Movie>> {
+        private int ordinal = -1;
+        private Binding next = advance();
+
+        private Binding advance() {
+            while (++ordinal < size) {
+                Binding binding = binding(movies[ordinal].getID());
+                if (binding != null && binding.ordinal == ordinal && binding.movie != null) {
+                    return binding;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, Movie> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, Movie> entry = new AbstractMap.SimpleImmutableEntry<>(next.movie.getID(), next.movie);
+            next = advance();
+            return entry;
+        }
+    }
+
+    // The ID lookup is shared with later indexes, so ordinals they added and removals
+    // they made are ignored here
+    private Binding binding(String movieId) {
+        for (Binding binding = ordinals.get(movieId); binding != null; binding = binding.previous) {
+            if (binding.ordinal < size && (binding.removedAt == 0 || binding.removedAt > removed)) {
+                return binding;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the id of the given genre, or -1 if no movie is listed under it.
+     */
+    int genreId(String genre) {
+        Integer id = genreIds.get(genre);
+        return id == null ? -1 : id;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int genreCount() {
+        return genres.length;
+    }
+
+    /**
+     * Returns the next index, with the movie added under the given genres like
+     * {@link Builder#addMovie} and {@link Builder#addGenre} would. The movie's ID must
+     * not be in this index. Only call this on the latest index: the movie is stored in
+     * the arrays it shares with its derived indexes.
+     */
+    CatalogIndex withMovie(Movie movie, List<String> movieGenreNames) {
+        if (ordinalOf(movie.getID()) >= 0) {
+            throw new IllegalArgumentException("Movie " + movie.getID() + " is already in the catalog");
+        }
+        int ordinal = size;
+        Movie[] movies = this.movies;
+        long[] genreMasks = this.genreMasks;
+        int maskWords = this.maskWords;
+        int[][] movieGenres = this.movieGenres;
+        if (ordinal == movies.length) {
+            int capacity = Math.max(16, ordinal * 2);
+            movies = Arrays.copyOf(movies, capacity);
+            genreMasks = Arrays.copyOf(genreMasks, capacity * maskWords);
+            movieGenres = Arrays.copyOf(movieGenres, capacity);
+        }
+
+        String[] genres = this.genres;
+        int[][] postings = this.postings.clone();
+        int[] postingSizes = this.postingSizes.clone();
+        Map<String, Integer> genreIds = this.genreIds;
+        int[] listed = new int[movieGenreNames.size()];
+        for (int i = 0; i < listed.length; i++) {
+            String name = movieGenreNames.get(i);
+            Integer genre = genreIds.get(name);
+            if (genre == null) {
+                genre = genres.length;
+                genres = Arrays.copyOf(genres, genre + 1);
+                genres[genre] = name;
+                genreIds = new HashMap<>(genreIds);
+                genreIds.put(name, genre);
+                postings = Arrays.copyOf(postings, genre + 1);
+                postings[genre] = new int[8];
+                postingSizes = Arrays.copyOf(postingSizes, genre + 1);
+            }
+            listed[i] = genre;
+        }
+        if (maskWords(genres.length) > maskWords) { // A new array, the one shared with earlier indexes stays
+            int wider = maskWords(genres.length);
+            genreMasks = widen(genreMasks, maskWords, ordinal, wider, movies.length);
+            maskWords = wider;
+        }
+        int maskFrom = ordinal * maskWords;
+        Arrays.fill(genreMasks, maskFrom, maskFrom + maskWords, 0);
+        for (int genre : listed) {
+            long bit = 1L << genre;
+            if ((genreMasks[maskFrom + (genre >>> 6)] & bit) == 0) {
+                genreMasks[maskFrom + (genre >>> 6)] |= bit;
+                // The new ordinal is the largest, so the posting stays sorted
+                int postingSize = postingSizes[genre];
+                if (postingSize == postings[genre].length) {
+                    postings[genre] = Arrays.copyOf(postings[genre], Math.max(8, postingSize * 2));
+                }
+                postings[genre][postingSize] = ordinal;
+                postingSizes[genre] = postingSize + 1;
+            }
+        }
+        movies[ordinal] = movie;
+        movieGenres[ordinal] = listed;
+        ordinals.put(movie.getID(), new Binding(ordinal, movie, 0, ordinals.get(movie.getID())));
+        return new CatalogIndex(movies, genreMasks, maskWords, movieGenres, ordinal + 1, removed, movieIds + 1,
+                genres, postings, postingSizes, ordinals, genreIds);
+    }
+
+    /**
+     * Returns the next index, without the movie with the given ID, or this index if
+     * there is no such movie. Only call this on the latest index.
+     */
+    CatalogIndex withoutMovie(String movieId) {
+        Binding binding = binding(movieId);
+        if (binding == null) {
+            return this;
+        }
+        int ordinal = binding.ordinal;
+        int[][] postings = this.postings.clone();
+        int[] postingSizes = this.postingSizes.clone();
+        for (int genre : movieGenres[ordinal]) {
+            int[] posting = postings[genre];
+            int postingSize = postingSizes[genre];
+            int at = 0; // Postings need not be sorted, see of(Map, Map)
+            while (at < postingSize && posting[at] != ordinal) {
+                at++;
+            }
+            if (at < postingSize) { // Not yet removed for a genre listed twice
+                int[] shorter = Arrays.copyOf(posting, postingSize - 1);
+                System.arraycopy(posting, at + 1, shorter, at, postingSize - at - 1);
+                postings[genre] = shorter;
+                postingSizes[genre] = postingSize - 1;
+            }
+        }
+        // In the latest index the movie's binding is the ID's newest one
+        ordinals.put(movieId, new Binding(ordinal, binding.movie, removed + 1, binding.previous));
+        return new CatalogIndex(movies, genreMasks, maskWords, movieGenres, size, removed + 1,
+                binding.movie != null ? movieIds - 1 : movieIds, genres, postings, postingSizes, ordinals, genreIds);
+    }
+
+    /**
+     * Returns an index without removed movies or spare room, with the same movies
+     * and postings in the same order, or this index if it has neither.
+     */
+    CatalogIndex compacted() {
+        if (exact) {
+            return this;
+        }
+        Builder builder = new Builder();
+        builder.keepPostingOrder = true;
+        int[] compacted = new int[size];
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            Binding binding = binding(movies[ordinal].getID());
+            if (binding == null || binding.ordinal != ordinal) {
+                compacted[ordinal] = -1; // Removed
+                continue;
+            }
+            compacted[ordinal] = builder.addMovie(movies[ordinal]);
+            builder.bind(movies[ordinal].getID(), binding.movie);
+            for (int genre : movieGenres[ordinal]) {
+                builder.list(compacted[ordinal], builder.genreId(genres[genre]));
+            }
+        }
+        for (int genre = 0; genre < genres.length; genre++) {
+            for (int p = 0; p < postingSizes[genre]; p++) {
+                int ordinal = postings[genre][p];
+                if (compacted[ordinal] >= 0) {
+                    builder.post(compacted[ordinal], builder.genreId(genres[genre]));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Accumulates movies and genres in load order. A builder can start from an
+     * existing index so that loading a second file extends the catalog.
+     */
+    static final class Builder {
+        private final List<Movie> movies = new ArrayList<>();
+        private final List<int[]> movieGenres = new ArrayList<>();
+        private final List<String> genres = new ArrayList<>();
+        private final Map<String, Integer> ordinals = new HashMap<>();
+        private final Map<String, Movie> byId = new HashMap<>(); // See movie(String)
+        private final Map<String, Integer> genreIds = new HashMap<>();
+        private long[] genreMasks = new long[16]; // maskWords longs per ordinal
+        private int maskWords = 1;
+        private int[][] postings = new int[16][];
+        private int[] postingSizes = new int[16];
+        private boolean[] postingSorted = new boolean[16];
+        private boolean keepPostingOrder; // Postings stay in the order movies were posted
+
+        Builder() {
+        }
+
+        Builder(CatalogIndex base) {
+            base = base.compacted();
+            movies.addAll(Arrays.asList(base.movies));
+            movieGenres.addAll(Arrays.asList(base.movieGenres));
+            genres.addAll(Arrays.asList(base.genres));
+            for (int ordinal = 0; ordinal < base.movies.length; ordinal++) {
+                String id = base.movies[ordinal].getID();
+                ordinals.put(id, ordinal);
+                bind(id, base.movie(id));
+            }
+            genreIds.putAll(base.genreIds);
+            maskWords = base.maskWords;
+            genreMasks = Arrays.copyOf(base.genreMasks, Math.max(16, base.movies.length) * maskWords);
+            growPostings(base.genres.length);
+            for (int genre = 0; genre < base.genres.length; genre++) {
+                postings[genre] = base.postings[genre].clone();
+                postingSizes[genre] = base.postings[genre].length;
+                postingSorted[genre] = true;
+            }
+        }
+
+        /**
+         * Adds a movie and returns its ordinal. A movie whose ID is already known
+         * keeps its ordinal and has its listed genres cleared, so they can be re-listed.
+         */
+        int addMovie(Movie movie) {
+            byId.put(movie.getID(), movie);
+            Integer existing = ordinals.get(movie.getID());
+            if (existing != null) {
+                movieGenres.set(existing, new int[0]);
+                return existing;
+            }
+            int ordinal = movies.size();
+            ordinals.put(movie.getID(), ordinal);
+            movies.add(movie);
+            movieGenres.add(new int[0]);
+            if ((ordinal + 1) * maskWords > genreMasks.length) {
+                genreMasks = Arrays.copyOf(genreMasks, ordinal * 2 * maskWords);
+            }
+            return ordinal;
+        }
+
+        // Sets the movie looked up by the ID, or leaves the ID out of the lookup if it is null
+        private void bind(String id, Movie movie) {
+            if (movie != null) {
+                byId.put(id, movie);
+            } else {
+                byId.remove(id);
+            }
+        }
+
+        /**
+         * Lists the movie under the genre and posts it to that genre's movies.
+         */
+        void addGenre(int ordinal, String genre) {
+            int id = genreId(genre);
+            list(ordinal, id);
+            post(ordinal, id);
+        }
+
+        private int genreId(String genre) {
+            Integer id = genreIds.get(genre);
+            if (id != null) {
+                return id;
+            }
+            id = genres.size();
+            if (id == postings.length) {
+                growPostings(id * 2);
+            }
+            if (id == maskWords * Long.SIZE) {
+                genreMasks = widen(genreMasks, maskWords, movies.size(), maskWords + 1, genreMasks.length / maskWords);
+                maskWords++;
+            }
+            genreIds.put(genre, id);
+            genres.add(genre);
+            postings[id] = new int[8];
+            postingSorted[id] = true;
+            return id;
+        }
+
+        private void growPostings(int capacity) {
+            if (capacity > postings.length) {
+                postings = Arrays.copyOf(postings, capacity);
+                postingSizes = Arrays.copyOf(postingSizes, capacity);
+                postingSorted = Arrays.copyOf(postingSorted, capacity);
+            }
+        }
+
+        private void list(int ordinal, int genre) {
+            int[] listed = movieGenres.get(ordinal);
+            int[] grown = Arrays.copyOf(listed, listed.length + 1);
+            grown[listed.length] = genre;
+            movieGenres.set(ordinal, grown);
+        }
+
+        private void post(int ordinal, int genre) {
+            int word = ordinal * maskWords + (genre >>> 6);
+            long bit = 1L << genre;
+            if ((genreMasks[word] & bit) != 0) {
+                return;
+            }
+            genreMasks[word] |= bit;
+            int size = postingSizes[genre];
+            if (size == postings[genre].length) {
+                postings[genre] = Arrays.copyOf(postings[genre], Math.max(8, size * 2));
+            }
+            if (size > 0 && postings[genre][size - 1] > ordinal) {
+                postingSorted[genre] = false;
+            }
+            postings[genre][size] = ordinal;
+            postingSizes[genre] = size + 1;
+        }
+
+        CatalogIndex build() {
+            return new CatalogIndex(this);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.reelrec;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Versioned binary image of a loaded {@link RecommendationSystem}: its movies, genre
+ * postings, movie ID map and users with their watch lists, and the validation warnings
+ * of the load, so a warm start reports the same warnings. The header carries a hash
+ * of the contents of the files the system was loaded from, and a snapshot is only
+ * read back when that hash matches, so a stale snapshot is never used.
+ *
+ * Layout (big-endian, strings as a UTF-8 byte count followed by the bytes, -1 for null):
+ * magic, version, source hash, movie table, genres with their postings, the listed
+ * genres of every catalog movie, the movie ID map, the users and the movie and user
+ * file warnings. Movies are written once in the table and referred to by their index in it.
+ */
+public final class CatalogSnapshot {
+
+    // System property naming the snapshot file Main and ReelRecApp warm-start from
+    public static final String PATH_PROPERTY = "reelrec.snapshot";
+
+    static final int MAGIC = 0x52524353; // "RRCS"
+    static final int VERSION = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The validation warnings of the movies and users files the snapshot was loaded from.
+     */
+    public record Warnings(List<ValidationError> movies, List<ValidationError> users) {
+        public static final Warnings NONE = new Warnings(List.of(), List.of());
+    }
+
+    final CatalogIndex catalog;
+    final List<User> users;
+    final Warnings warnings;
+
+    CatalogSnapshot(CatalogIndex catalog, List<User> users, Warnings warnings) {
+        this.catalog = catalog.compacted(); // Without removed movies
+        this.users = users;
+        this.warnings = warnings;
+    }
+
+    // Hashes the input files, or returns null (no snapshot) if they cannot be read
+    static byte[] sourceHashOrNull(String... sourceFiles) {
+        try {
+            return sourceHash(sourceFiles);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Warm-starts Main and ReelRecApp: loads the snapshot into the RecommendationSystem
+     * and returns the warnings saved with it, or null if there is no current snapshot.
+     * An unreadable snapshot is reported and ignored.
+     */
+    static Warnings warmStart(RecommendationSystem recSys, String snapshotPath, byte[] sourceHash) {
+        try {
+            return recSys.restoreSnapshot(snapshotPath, sourceHash);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("⚠️ Ignoring unreadable snapshot " + snapshotPath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Saves a cold start for the next warm start, reporting a failure
+    static void save(RecommendationSystem recSys, String snapshotPath, byte[] sourceHash, Warnings warnings) {
+        try {
+            recSys.saveSnapshot(snapshotPath, sourceHash, warnings);
+        } catch (IOException e) {
+            System.out.println("⚠️ Could not save snapshot " + snapshotPath + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the SHA-256 hash of the contents of the given files, in order.
+     */
+    public static byte[] sourceHash(String... sourceFiles) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (String file : sourceFiles) {
+            long length = 0;
+            try (InputStream in = new FileInputStream(file)) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                    length += read;
+                }
+            }
+            // Hash each length too, so moving lines from one file to the other changes the hash
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                digest.update((byte) (length >>> shift));
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Writes the snapshot to a temporary file and moves it over {@code path}, so readers
+     * never see a half-written snapshot.
+     */
+    void write(String path, byte[] sourceHash) throws IOException {
+        // Number the movies: catalog movies keep their ordinals, others are appended
+        List<Movie> table = new ArrayList<>(Arrays.asList(catalog.movies));
+        Map<Movie, Integer> indexes = new IdentityHashMap<>();
+        for (int ordinal = 0; ordinal < catalog.movies.length; ordinal++) {
+            indexes.put(catalog.movies[ordinal], ordinal);
+        }
+        Map<String, Movie> movieIdMap = catalog.movieIds();
+        int[] idMapRefs = new int[movieIdMap.size()];
+        String[] idMapKeys = new String[movieIdMap.size()];
+        int entry = 0;
+        for (Map.Entry<String, Movie> idEntry : movieIdMap.entrySet()) {
+            idMapKeys[entry] = idEntry.getKey();
+            idMapRefs[entry++] = reference(idEntry.getValue(), table, indexes);
+        }
+        int[][] watchRefs = new int[users.size()][];
+        for (int i = 0; i < watchRefs.length; i++) {
+            List<Movie> watchList = users.get(i).getWatchList();
+            if (watchList != null) {
+                watchRefs[i] = new int[watchList.size()];
+                for (int j = 0; j < watchRefs[i].length; j++) {
+                    watchRefs[i][j] = reference(watchList.get(j), table, indexes);
+                }
+            }
+        }
+
+        Path target = Paths.get(path);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sourceHash.length);
+            out.write(sourceHash);
+
+            out.writeInt(table.size());
+            out.writeInt(catalog.movies.length);
+            for (Movie movie : table) {
+                writeString(out, movie.getID());
+                writeString(out, movie.getName());
+                String[] genres = movie.getGenre();
+                out.writeInt(genres.length);
+                for (String genre : genres) {
+                    writeString(out, genre);
+                }
+            }
+
+            out.writeInt(catalog.genres.length);
+            for (int genre = 0; genre < catalog.genres.length; genre++) {
+                writeString(out, catalog.genres[genre]);
+                writeInts(out, catalog.postings[genre]);
+            }
+            for (int[] listed : catalog.movieGenres) {
+                writeInts(out, listed);
+            }
+
+            out.writeInt(idMapKeys.length);
+            for (int i = 0; i < idMapKeys.length; i++) {
+                writeString(out, idMapKeys[i]);
+                out.writeInt(idMapRefs[i]);
+            }
+
+            out.writeInt(users.size());
+            for (int i = 0; i < watchRefs.length; i++) {
+                User user = users.get(i);
+                writeString(out, user.getName());
+                writeString(out, user.getId());
+                writeString(out, user.getErrorMessage());
+                if (watchRefs[i] == null) {
+                    out.writeInt(-1);
+                } else {
+                    writeInts(out, watchRefs[i]);
+                }
+            }
+
+            writeErrors(out, warnings.movies());
+            writeErrors(out, warnings.users());
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a snapshot in one sequential pass. Returns null if there is no snapshot at
+     * {@code path}, or if it has another format version or was saved from sources with
+     * a different hash.
+     */
+    static CatalogSnapshot read(String path, byte[] sourceHash) throws IOException {
+        InputStream file;
+        try {
+            file = Files.newInputStream(Paths.get(path));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(file, BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            byte[] savedHash = new byte[in.readInt()];
+            in.readFully(savedHash);
+            if (!MessageDigest.isEqual(savedHash, sourceHash)) {
+                return null;
+            }
+
+            Movie[] table = new Movie[in.readInt()];
+            Movie[] movies = new Movie[in.readInt()];
+            for (int i = 0; i < table.length; i++) {
+                String id = readString(in);
+                String name = readString(in);
+                String[] genres = new String[in.readInt()];
+                for (int j = 0; j < genres.length; j++) {
+                    genres[j] = readString(in);
+                }
+                table[i] = new Movie(id, name, genres);
+            }
+            System.arraycopy(table, 0, movies, 0, movies.length);
+
+            String[] genres = new String[in.readInt()];
+            int[][] postings = new int[genres.length][];
+            for (int genre = 0; genre < genres.length; genre++) {
+                genres[genre] = readString(in);
+                postings[genre] = readInts(in);
+            }
+            int[][] movieGenres = new int[movies.length][];
+            for (int ordinal = 0; ordinal < movies.length; ordinal++) {
+                movieGenres[ordinal] = readInts(in);
+            }
+
+            int idMapSize = in.readInt();
+            Map<String, Movie> movieIdMap = new HashMap<>(idMapSize * 2);
+            for (int i = 0; i < idMapSize; i++) {
+                String id = readString(in);
+                movieIdMap.put(id, movie(table, in.readInt()));
+            }
+
+            int userCount = in.readInt();
+            List<User> users = new ArrayList<>(userCount);
+            for (int i = 0; i < userCount; i++) {
+                String name = readString(in);
+                String id = readString(in);
+                String errorMessage = readString(in);
+                int watched = in.readInt();
+                User user;
+                if (watched < 0) {
+                    user = new User(name, id, null);
+                } else {
+                    user = new User(name, id);
+                    for (int j = 0; j < watched; j++) {
+                        user.addToWatchList(movie(table, in.readInt()));
+                    }
+                }
+                user.setErrorMessage(errorMessage);
+                users.add(user);
+            }
+
+            Warnings warnings = new Warnings(readErrors(in), readErrors(in));
+            return new CatalogSnapshot(CatalogIndex.of(movies, movieGenres, genres, postings, movieIdMap), users,
+                    warnings);
+        }
+    }
+
+    private static int reference(Movie movie, List<Movie> table, Map<Movie, Integer> indexes) {
+        if (movie == null) {
+            return -1;
+        }
+        Integer index = indexes.get(movie);
+        if (index == null) {
+            index = table.size();
+            indexes.put(movie, index);
+            table.add(movie);
+        }
+        return index;
+    }
+
+    private static Movie movie(Movie[] table, int reference) {
+        return reference < 0 ? null : table[reference];
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static void writeErrors(DataOutputStream out, List<ValidationError> errors) throws IOException {
+        out.writeInt(errors.size());
+        for (ValidationError error : errors) {
+            writeString(out, error.code().name());
+            writeString(out, error.file());
+            out.writeInt(error.line());
+            writeString(out, error.value());
+        }
+    }
+
+    private static List<ValidationError> readErrors(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<ValidationError> errors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ValidationError.Code code = ValidationError.Code.valueOf(readString(in));
+            errors.add(new ValidationError(code, readString(in), in.readInt(), readString(in)));
+        }
+        return errors;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,217 @@
+package com.reelrec;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sits in front of the query path of a {@link RecommendationSystem} and merges work:
+ * <ul>
+ *   <li>Identical requests in flight, for the same user or movie of the same
+ *   RecommendationSystem, share one computation and get the same result list, which
+ *   callers must not modify.</li>
+ *   <li>With a batch window, distinct requests arriving within the window are computed
+ *   together as one batch, back to back on one thread against one catalog snapshot,
+ *   so the postings of hot genres stay in cache. A full batch is computed at once.</li>
+ * </ul>
+ * With a window of 0 there is no batching: the first of the identical requests computes
+ * on its own thread, and the others wait for it. Requests made after {@link #close()},
+ * or that the executor rejects, fail.
+ */
+public final class CoalescingRecommender implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_BATCH = 64;
+
+    // A request for one user or movie of one RecommendationSystem, compared by identity
+    private record Key(RecommendationSystem recSys, boolean similar, String id) {
+    }
+
+    private record Pending(Key key, User user, Movie movie, CompletableFuture<List<Movie>> result) {
+    }
+
+    private final long windowNanos;
+    private final int maxBatch;
+    private final Executor executor;
+    private final ScheduledExecutorService timer; // Null without a window
+    private final ConcurrentHashMap<Key, CompletableFuture<List<Movie>>> inFlight = new ConcurrentHashMap<>();
+    private List<Pending> batch = new ArrayList<>(); // Guarded by this
+    private ScheduledFuture<?> batchDue;
+    private volatile boolean closed; // Set while holding this
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong computations = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    /**
+     * Coalesces identical requests without batching.
+     */
+    public CoalescingRecommender() {
+        this(0, TimeUnit.NANOSECONDS, DEFAULT_MAX_BATCH, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Batches the requests arriving within the window, up to maxBatch of them, and
+     * computes the batches on the executor.
+     */
+    public CoalescingRecommender(long window, TimeUnit unit, int maxBatch, Executor executor) {
+        if (window < 0 || maxBatch < 1) {
+            throw new IllegalArgumentException("window must not be negative and maxBatch must be positive");
+        }
+        this.windowNanos = unit.toNanos(window);
+        this.maxBatch = maxBatch;
+        this.executor = executor;
+        if (windowNanos == 0) {
+            this.timer = null;
+        } else {
+            this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "reelrec-batcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Returns the recommendations of {@link RecommendationSystem#getRecommendations(User)}.
+     */
+    public CompletableFuture<List<Movie>> recommendations(RecommendationSystem recSys, User user) {
+        return submit(new Key(recSys, false, user.getId()), user, null);
+    }
+
+    /**
+     * Returns the movies of {@link RecommendationSystem#recommendSimilarMovies(Movie)}.
+     */
+    public CompletableFuture<List<Movie>> similarMovies(RecommendationSystem recSys, Movie movie) {
+        return submit(new Key(recSys, true, movie.getID()), null, movie);
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getComputationCount() {
+        return computations.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * Stops the batch timer and computes the requests still waiting for their window.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        if (timer != null) {
+            timer.shutdownNow();
+            compute(takeBatch());
+        }
+    }
+
+    private CompletableFuture<List<Movie>> submit(Key key, User user, Movie movie) {
+        requests.incrementAndGet();
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Closed"));
+        }
+        CompletableFuture<List<Movie>> result = new CompletableFuture<>();
+        CompletableFuture<List<Movie>> computing = inFlight.putIfAbsent(key, result);
+        if (computing != null) {
+            return computing;
+        }
+        Pending pending = new Pending(key, user, movie, result);
+        if (timer == null) {
+            compute(List.of(pending));
+            return result;
+        }
+        List<Pending> full = null;
+        synchronized (this) {
+            if (closed) { // Closed since the check above, and the last batch is taken
+                fail(List.of(pending), new IllegalStateException("Closed"));
+                return result;
+            }
+            batch.add(pending);
+            if (batch.size() >= maxBatch) {
+                full = takeBatch();
+            } else if (batch.size() == 1) {
+                try {
+                    batchDue = timer.schedule(() -> execute(takeBatch()), windowNanos, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    full = takeBatch();
+                    fail(full, e);
+                    return result;
+                }
+            }
+        }
+        if (full != null) {
+            execute(full);
+        }
+        return result;
+    }
+
+    // Computes the requests on the executor, or fails them if it rejects them
+    private void execute(List<Pending> due) {
+        if (due.isEmpty()) {
+            return;
+        }
+        try {
+            executor.execute(() -> compute(due));
+        } catch (RejectedExecutionException e) {
+            fail(due, e);
+        }
+    }
+
+    private void fail(List<Pending> due, Throwable failure) {
+        for (Pending pending : due) {
+            inFlight.remove(pending.key(), pending.result());
+            pending.result().completeExceptionally(failure);
+        }
+    }
+
+    private synchronized List<Pending> takeBatch() {
+        List<Pending> due = batch;
+        batch = new ArrayList<>();
+        if (batchDue != null) {
+            batchDue.cancel(false);
+            batchDue = null;
+        }
+        return due;
+    }
+
+    private void compute(List<Pending> due) {
+        if (due.isEmpty()) {
+            return;
+        }
+        batches.incrementAndGet();
+        if (due.size() > 1) {
+            // Users first, then movies, each in one run over the same postings
+            due = new ArrayList<>(due);
+            due.sort(Comparator.comparing((Pending pending) -> pending.key().similar()));
+        }
+        for (Pending pending : due) {
+            Key key = pending.key();
+            try {
+                List<Movie> movies = key.similar()
+                        ? key.recSys().recommendSimilarMovies(pending.movie())
+                        : key.recSys().getRecommendations(pending.user()).getMovies();
+                computations.incrementAndGet();
+                // Requests from now on compute again, so they see later changes
+                inFlight.remove(key, pending.result());
+                pending.result().complete(movies);
+            } catch (Throwable e) { // Even an Error, or the key would stay in flight for good
+                fail(List.of(pending), e);
+            }
+        }
+    }
+}
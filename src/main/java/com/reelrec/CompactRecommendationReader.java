@@ -0,0 +1,131 @@
+package com.reelrec;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a file written by {@link CompactRecommendationWriter} one user at a time, and
+ * decodes it back into the text layout of {@link RecommendationWriter}.
+ *
+ * <p>Run as a program to decode a file: {@code CompactRecommendationReader <compact> <text>}
+ */
+public class CompactRecommendationReader implements Closeable {
+
+    private final DataInputStream in;
+    private final List<Movie> dictionary = new ArrayList<>();
+    private List<Movie> recommendations;
+
+    public CompactRecommendationReader(String inputPath) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(inputPath),
+                RecommendationWriter.BUFFER_SIZE));
+        if (in.readInt() != CompactRecommendationWriter.MAGIC) {
+            in.close();
+            throw new IOException("Not a compact recommendations file: " + inputPath);
+        }
+        int version = in.readInt();
+        if (version != CompactRecommendationWriter.VERSION) {
+            in.close();
+            throw new IOException("Unsupported compact recommendations version " + version + ": " + inputPath);
+        }
+    }
+
+    /**
+     * Reads the next user, with its error message, or returns null at the end of the file.
+     * Its recommendations are then returned by {@link #recommendations()}.
+     */
+    public User next() throws IOException {
+        while (true) {
+            int tag = in.read();
+            if (tag < 0) {
+                return null;
+            }
+            if (tag == CompactRecommendationWriter.MOVIE) {
+                String id = readString();
+                String name = readString();
+                dictionary.add(new Movie(id, name));
+            } else if (tag == CompactRecommendationWriter.USER) {
+                User user = new User(readString(), readString());
+                user.setErrorMessage(readString());
+                int count = readVarint();
+                recommendations = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    int ordinal = readVarint();
+                    if (ordinal >= dictionary.size()) {
+                        throw new IOException("Movie " + ordinal + " is not in the dictionary");
+                    }
+                    recommendations.add(dictionary.get(ordinal));
+                }
+                return user;
+            } else {
+                throw new IOException("Unknown record tag " + tag);
+            }
+        }
+    }
+
+    // The recommendations of the user last returned by next()
+    public List<Movie> recommendations() {
+        return recommendations;
+    }
+
+    /**
+     * Writes every remaining user through the writer and returns how many there were.
+     */
+    public int decodeTo(RecommendationOutput writer) throws IOException {
+        int users = 0;
+        User user;
+        while ((user = next()) != null) {
+            writer.write(user, recommendations);
+            users++;
+        }
+        return users;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private String readString() throws IOException {
+        int length = readVarint() - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: CompactRecommendationReader <compact file> <text file>");
+            return;
+        }
+        try (CompactRecommendationReader reader = new CompactRecommendationReader(args[0]);
+             RecommendationWriter writer = new RecommendationWriter(args[1], false)) {
+            System.out.println("Decoded " + reader.decodeTo(writer) + " users into " + args[1]);
+        } catch (EOFException e) {
+            System.out.println("❌ Truncated compact recommendations file: " + args[0]);
+        } catch (IOException e) {
+            System.out.println("❌ Error decoding recommendations: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.reelrec;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes recommendations in a compact binary format instead of text. Every movie's ID
+ * and title are written once, in a dictionary entry before the first record that
+ * recommends it; user records then refer to movies by their ordinal in the dictionary.
+ * {@link CompactRecommendationReader} turns the file back into the text layout.
+ *
+ * Layout: magic and version (big-endian ints), then records, each starting with a tag
+ * byte. A MOVIE record holds the ID and title of the next ordinal; a USER record holds
+ * the name, ID and error message, the number of recommendations and their ordinals.
+ * Numbers are unsigned varints; strings are a varint of the UTF-8 byte count plus one
+ * (0 for null) followed by the bytes.
+ */
+public class CompactRecommendationWriter implements RecommendationOutput {
+
+    // System property: "compact" makes Main and ReelRecApp write this format
+    public static final String FORMAT_PROPERTY = "reelrec.output.format";
+
+    static final int MAGIC = 0x52524352; // "RRCR"
+    static final int VERSION = 1;
+    static final int MOVIE = 'M';
+    static final int USER = 'U';
+
+    private final DataOutputStream out;
+    private final Map<Movie, Integer> ordinals = new IdentityHashMap<>();
+    private int unflushed; // Records written since the last flush, see FlightEvents.OutputFlush
+
+    /**
+     * Creates or replaces the output file; the format cannot be appended to.
+     */
+    public CompactRecommendationWriter(String outputPath) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputPath), RecommendationWriter.BUFFER_SIZE));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    // Whether the property asks for the compact format
+    public static boolean requested() {
+        return "compact".equalsIgnoreCase(System.getProperty(FORMAT_PROPERTY));
+    }
+
+    @Override
+    public void write(User user, List<Movie> recommendations) throws IOException {
+        long start = System.nanoTime();
+        int[] refs = new int[recommendations.size()];
+        for (int i = 0; i < refs.length; i++) {
+            Movie movie = recommendations.get(i);
+            Integer ordinal = ordinals.get(movie);
+            if (ordinal == null) {
+                ordinal = ordinals.size();
+                ordinals.put(movie, ordinal);
+                out.writeByte(MOVIE);
+                writeString(movie.getID());
+                writeString(movie.getName());
+            }
+            refs[i] = ordinal;
+        }
+
+        out.writeByte(USER);
+        writeString(user.getName());
+        writeString(user.getId());
+        writeString(user.getErrorMessage());
+        writeVarint(refs.length);
+        for (int ref : refs) {
+            writeVarint(ref);
+        }
+        unflushed++;
+        RecommendationWriter.WRITE_TIME.recordSince(start);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        FlightEvents.OutputFlush event = new FlightEvents.OutputFlush();
+        event.begin();
+        out.flush();
+        RecommendationWriter.flushed(event, unflushed, false);
+        unflushed = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        FlightEvents.OutputFlush event = new FlightEvents.OutputFlush();
+        event.begin();
+        out.close();
+        RecommendationWriter.flushed(event, unflushed, true);
+        unflushed = 0;
+    }
+
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarint(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length + 1);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,135 @@
+package com.reelrec;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder events for the stages of a run, under the "ReelRec" category.
+ * Callers follow the usual pattern: create the event, {@code begin()}, and fill in and
+ * {@code commit()} it only if {@code shouldCommit()}. Without a recording that is a
+ * volatile read, and the event object does not escape, so it costs next to nothing.
+ */
+final class FlightEvents {
+
+    private FlightEvents() {
+    }
+
+    @Name("com.reelrec.CatalogLoad")
+    @Label("Catalog Load")
+    @Category("ReelRec")
+    @Description("Movies file loaded into a new catalog")
+    @StackTrace(false)
+    static final class CatalogLoad extends Event {
+        @Label("File")
+        String path;
+
+        @Label("Movies Loaded")
+        int movies;
+
+        @Label("Records Skipped")
+        int skipped;
+
+        @Label("Catalog Size")
+        @Description("Movies in the catalog after the load")
+        int catalogSize;
+
+        @Label("Genres")
+        int genres;
+    }
+
+    @Name("com.reelrec.UserLoad")
+    @Label("User Load")
+    @Category("ReelRec")
+    @Description("Users file loaded")
+    @StackTrace(false)
+    static final class UserLoad extends Event {
+        @Label("File")
+        String path;
+
+        @Label("Users Loaded")
+        int users;
+
+        @Label("Users With Errors")
+        int usersWithErrors;
+    }
+
+    @Name("com.reelrec.Recommendation")
+    @Label("Recommendation")
+    @Category("ReelRec")
+    @Description("Recommendations computed for one user, recorded above the threshold")
+    @StackTrace(false)
+    @Threshold("1 ms")
+    static final class Recommendation extends Event {
+        @Label("User Id")
+        String userId;
+
+        @Label("Watched Movies")
+        int watched;
+
+        @Label("Candidates")
+        @Description("Postings scanned, counting a movie once per genre it is listed under")
+        long candidates;
+
+        @Label("Results")
+        int results;
+
+        @Label("Catalog Size")
+        int catalogSize;
+    }
+
+    @Name("com.reelrec.Validation")
+    @Label("Validation")
+    @Category("ReelRec")
+    @Description("Pass of the validator over a movies or users file")
+    @StackTrace(false)
+    static final class Validation extends Event {
+        @Label("File")
+        String path;
+
+        @Label("Kind")
+        @Description("movies or users")
+        String kind;
+
+        @Label("Records")
+        int records;
+
+        @Label("Invalid Records")
+        int invalidRecords;
+
+        @Label("Errors")
+        int errors;
+    }
+
+    @Name("com.reelrec.OutputFlush")
+    @Label("Output Flush")
+    @Category("ReelRec")
+    @Description("Recommendation records written out by a flush or close")
+    @StackTrace(false)
+    static final class OutputFlush extends Event {
+        @Label("Records")
+        @Description("Records written since the previous flush")
+        int records;
+
+        @Label("Closing")
+        boolean closing;
+    }
+
+    @Name("com.reelrec.Phase")
+    @Label("Processor Phase")
+    @Category("ReelRec")
+    @Description("Stage of a ReelRecProcessor run: validate, load or output")
+    @StackTrace(false)
+    static final class Phase extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Mode")
+        @Description("full, streaming, sharded or incremental")
+        String mode;
+    }
+}
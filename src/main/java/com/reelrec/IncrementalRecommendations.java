@@ -0,0 +1,316 @@
+package com.reelrec;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Writes recommendations incrementally: records of users that did not change since the
+ * last run are copied from the previous output instead of being recomputed.
+ *
+ * A sidecar manifest ("<output>.manifest") keeps the catalog hash of the run, the size
+ * and modification time of the output it describes, and for every record its user's
+ * fingerprint with the record's offset and length. The fingerprint hashes everything a
+ * record is made of (name, ID, error message and the IDs of the watch list), so a user
+ * with a known fingerprint gets the same record as before as long as the catalog hash
+ * is the same. If the catalog changed, or the manifest does not describe the previous
+ * output, every user is recomputed.
+ *
+ * Manifest layout (big-endian): magic, version, catalog hash (int length and bytes),
+ * output size, output modification time, record count, then per record the
+ * fingerprint, offset and length.
+ */
+public final class IncrementalRecommendations {
+
+    static final int MAGIC = 0x5252494D; // "RRIM"
+    static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private IncrementalRecommendations() {
+    }
+
+    public static String manifestPath(String outputPath) {
+        return outputPath + ".manifest";
+    }
+
+    // Where the output of the last run is kept while the new one is written
+    static String previousPath(String outputPath) {
+        return outputPath + ".prev";
+    }
+
+    /**
+     * Moves the output of the last run aside, keeping its modification time, so that
+     * the output file can be cleared and written again. Call before clearing the output.
+     */
+    public static void keepPrevious(String outputPath) throws IOException {
+        Path output = Paths.get(outputPath);
+        if (Files.exists(output)) {
+            Files.move(output, Paths.get(previousPath(outputPath)), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Appends the records of the users to the output file, copying unchanged ones from
+     * the previous output and recomputing the rest in parallel, then saves the new
+     * manifest and deletes the previous output. Returns the number of users recomputed.
+     */
+    public static int write(RecommendationSystem recSys, List<User> users, String outputPath,
+                            byte[] catalogHash) throws IOException {
+        String previousPath = previousPath(outputPath);
+        Manifest previous = Manifest.read(manifestPath(outputPath), catalogHash, previousPath);
+
+        MessageDigest digest = sha256();
+        long[] fingerprints = new long[users.size()];
+        List<User> changed = new ArrayList<>();
+        for (int i = 0; i < fingerprints.length; i++) {
+            fingerprints[i] = fingerprint(digest, users.get(i));
+            if (previous == null || previous.find(fingerprints[i]) < 0) {
+                changed.add(users.get(i));
+            }
+        }
+        Iterator<List<Movie>> recomputed = recSys.recommendMoviesForUsers(changed).iterator();
+
+        long[] offsets = new long[users.size()];
+        int[] lengths = new int[users.size()];
+        try (FileChannel out = FileChannel.open(Paths.get(outputPath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+             FileChannel in = previous == null ? null : FileChannel.open(Paths.get(previousPath), StandardOpenOption.READ)) {
+            RecordWriter writer = new RecordWriter(out, in);
+            for (int i = 0; i < fingerprints.length; i++) {
+                int record = previous == null ? -1 : previous.find(fingerprints[i]);
+                offsets[i] = writer.position;
+                if (record >= 0) {
+                    lengths[i] = writer.copy(previous.offsets[record], previous.lengths[record]);
+                } else {
+                    lengths[i] = writer.render(recSys, users.get(i), recomputed.next());
+                }
+            }
+            writer.finish();
+        }
+
+        Path output = Paths.get(outputPath);
+        new Manifest(catalogHash, Files.size(output), Files.getLastModifiedTime(output).toMillis(),
+                fingerprints, offsets, lengths).write(manifestPath(outputPath));
+        Files.deleteIfExists(Paths.get(previousPath));
+        return changed.size();
+    }
+
+    /**
+     * Returns the fingerprint of everything a user's record is made of.
+     */
+    static long fingerprint(MessageDigest digest, User user) {
+        digest.reset();
+        update(digest, user.getName());
+        update(digest, user.getId());
+        update(digest, user.getErrorMessage());
+        List<Movie> watchList = user.getWatchList();
+        updateInt(digest, watchList == null ? -1 : watchList.size());
+        if (watchList != null) {
+            for (Movie movie : watchList) {
+                update(digest, movie == null ? null : movie.getID());
+            }
+        }
+        byte[] hash = digest.digest();
+        long fingerprint = 0;
+        for (int i = 0; i < 8; i++) {
+            fingerprint = (fingerprint << 8) | (hash[i] & 0xFF);
+        }
+        return fingerprint;
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            updateInt(digest, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        updateInt(digest, bytes.length);
+        digest.update(bytes);
+    }
+
+    private static void updateInt(MessageDigest digest, int value) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            digest.update((byte) (value >>> shift));
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Appends records to the output, coalescing copies of adjacent previous records into
+    // one transfer and recomputed records into one buffer write
+    private static final class RecordWriter {
+        private final FileChannel out;
+        private final FileChannel in;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final RecommendationWriter text;
+        private long copyFrom;
+        private long copyTo;  // Pending copy of [copyFrom, copyTo) of the previous output
+        long position;        // Offset of the next record in the output
+
+        RecordWriter(FileChannel out, FileChannel in) throws IOException {
+            this.out = out;
+            this.in = in;
+            // Encoded like the FileWriter of a normal run
+            this.text = new RecommendationWriter(new OutputStreamWriter(buffer, Charset.defaultCharset()));
+            this.position = out.size();
+        }
+
+        int copy(long offset, int length) throws IOException {
+            writeBuffer();
+            if (offset != copyTo) {
+                transfer();
+                copyFrom = offset;
+                copyTo = offset;
+            }
+            copyTo += length;
+            position += length;
+            return length;
+        }
+
+        int render(RecommendationSystem recSys, User user, List<Movie> recommendations) throws IOException {
+            transfer();
+            int before = buffer.size();
+            recSys.writeRecommendations(text, user, recommendations);
+            text.flush();
+            int length = buffer.size() - before;
+            position += length;
+            if (buffer.size() >= BUFFER_SIZE) {
+                writeBuffer();
+            }
+            return length;
+        }
+
+        void finish() throws IOException {
+            writeBuffer();
+            transfer();
+        }
+
+        private void transfer() throws IOException {
+            while (copyFrom < copyTo) {
+                long copied = in.transferTo(copyFrom, copyTo - copyFrom, out);
+                if (copied <= 0) {
+                    throw new EOFException("Previous output ends before offset " + copyTo);
+                }
+                copyFrom += copied;
+            }
+        }
+
+        private void writeBuffer() throws IOException {
+            if (buffer.size() == 0) {
+                return;
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            buffer.reset();
+        }
+    }
+
+    private static final class Manifest {
+        final byte[] catalogHash;
+        final long outputSize;
+        final long outputModified;
+        final long[] fingerprints;
+        final long[] offsets;
+        final int[] lengths;
+        private final Map<Long, Integer> records = new HashMap<>(); // First record of each fingerprint
+
+        Manifest(byte[] catalogHash, long outputSize, long outputModified, long[] fingerprints,
+                 long[] offsets, int[] lengths) {
+            this.catalogHash = catalogHash;
+            this.outputSize = outputSize;
+            this.outputModified = outputModified;
+            this.fingerprints = fingerprints;
+            this.offsets = offsets;
+            this.lengths = lengths;
+            for (int i = 0; i < fingerprints.length; i++) {
+                records.putIfAbsent(fingerprints[i], i);
+            }
+        }
+
+        int find(long fingerprint) {
+            Integer record = records.get(fingerprint);
+            return record == null ? -1 : record;
+        }
+
+        // Returns null unless the manifest has the catalog hash and describes the output file
+        static Manifest read(String path, byte[] catalogHash, String outputPath) throws IOException {
+            Path output = Paths.get(outputPath);
+            InputStream file;
+            try {
+                file = Files.newInputStream(Paths.get(path));
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(file, BUFFER_SIZE))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    return null;
+                }
+                byte[] savedHash = new byte[in.readInt()];
+                in.readFully(savedHash);
+                long outputSize = in.readLong();
+                long outputModified = in.readLong();
+                if (!MessageDigest.isEqual(savedHash, catalogHash) || !Files.exists(output)
+                        || Files.size(output) != outputSize
+                        || Files.getLastModifiedTime(output).toMillis() != outputModified) {
+                    return null;
+                }
+                int count = in.readInt();
+                long[] fingerprints = new long[count];
+                long[] offsets = new long[count];
+                int[] lengths = new int[count];
+                for (int i = 0; i < count; i++) {
+                    fingerprints[i] = in.readLong();
+                    offsets[i] = in.readLong();
+                    lengths[i] = in.readInt();
+                }
+                return new Manifest(savedHash, outputSize, outputModified, fingerprints, offsets, lengths);
+            }
+        }
+
+        // Written to a temporary file and moved into place, like a catalog snapshot
+        void write(String path) throws IOException {
+            Path target = Paths.get(path);
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(catalogHash.length);
+                out.write(catalogHash);
+                out.writeLong(outputSize);
+                out.writeLong(outputModified);
+                out.writeInt(fingerprints.length);
+                for (int i = 0; i < fingerprints.length; i++) {
+                    out.writeLong(fingerprints[i]);
+                    out.writeLong(offsets[i]);
+                    out.writeInt(lengths[i]);
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+}
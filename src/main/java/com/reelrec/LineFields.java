@@ -0,0 +1,72 @@
+package com.reelrec;
+
+/**
+ * Index-based versions of the String operations the file formats are parsed with,
+ * so that a line can be scanned in place whether it is a String or a mapped
+ * {@link AsciiLine}. Ranges are [from, to).
+ */
+final class LineFields {
+
+    private LineFields() {
+    }
+
+    // First character of the range that String.trim would keep
+    static int trimStart(CharSequence s, int from, int to) {
+        while (from < to && s.charAt(from) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    // End of the range that String.trim would keep
+    static int trimEnd(CharSequence s, int from, int to) {
+        while (to > from && s.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    static int indexOf(CharSequence s, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the end of the fields {@code s.split(",")} would return. split drops
+     * trailing empty fields, so for a line with commas this is just past its last
+     * non-comma character (0 if there is none); a line without commas is one field.
+     * The fields are the comma-separated ranges of [0, fieldsEnd).
+     */
+    static int fieldsEnd(CharSequence s) {
+        int end = s.length();
+        if (indexOf(s, ',', 0, end) < 0) {
+            return end;
+        }
+        while (end > 0 && s.charAt(end - 1) == ',') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Returns whether {@code s.split(",")} has exactly two fields, which are then
+     * [0, firstComma) and (firstComma, fieldsEnd).
+     */
+    static boolean hasTwoFields(CharSequence s, int firstComma, int fieldsEnd) {
+        return firstComma >= 0 && firstComma < fieldsEnd && indexOf(s, ',', firstComma + 1, fieldsEnd) < 0;
+    }
+
+    static String text(CharSequence s, int from, int to) {
+        if (s instanceof String) {
+            return ((String) s).substring(from, to);
+        }
+        if (s instanceof AsciiLine) {
+            return ((AsciiLine) s).text(from, to);
+        }
+        return s.subSequence(from, to).toString();
+    }
+}
@@ -5,11 +5,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class Main {
     public static void main(String[] args) {
@@ -32,7 +28,18 @@ public class Main {
             usersFilePath = "src/main/resources/users.txt";
             recommendationsFilePath = "src/main/resources/recommendations.txt";
         }
-        
+
+        // Count the stages of the run, for JMX and the summary file
+        MetricsRegistry.registerMBean();
+        MetricsRegistry.Snapshot start = MetricsRegistry.global().snapshot();
+        try {
+            run(moviesFilePath, usersFilePath, recommendationsFilePath);
+        } finally {
+            MetricsRegistry.writeRequestedSummary(start);
+        }
+    }
+
+    private static void run(String moviesFilePath, String usersFilePath, String recommendationsFilePath) {
         printWelcomeMessage();
 
         // Clear recommendations file
@@ -41,115 +48,149 @@ public class Main {
             System.out.println("❌ Error clearing recommendations file: " + e.getMessage());
         }
 
-        // Create one Validator instance
+        // Create one Validator instance and the RecommendationSystem it feeds
         Validator validator = new Validator();
+        RecommendationSystem recSys = new RecommendationSystem();
+        System.out.println("\n📂 Loading data files...");
+
+        // Reuse the snapshot of an earlier run over the same files, if one is configured
+        String snapshotPath = System.getProperty(CatalogSnapshot.PATH_PROPERTY);
+        byte[] sourceHash = snapshotPath == null ? null
+                : CatalogSnapshot.sourceHashOrNull(moviesFilePath, usersFilePath);
+        CatalogSnapshot.Warnings warnings = sourceHash == null ? null
+                : CatalogSnapshot.warmStart(recSys, snapshotPath, sourceHash);
+        if (warnings != null) {
+            // The warnings of the load the snapshot was saved from, as a cold start prints them
+            if (!warnings.movies().isEmpty()) {
+                printValidationWarnings("MOVIE FILE WARNINGS", warnings.movies());
+            }
+            if (!warnings.users().isEmpty()) {
+                printValidationWarnings("USER FILE WARNINGS", warnings.users());
+            }
+            System.out.println("✅ Data loaded from snapshot: " + snapshotPath);
+        } else {
+            warnings = loadAndValidate(moviesFilePath, usersFilePath, recommendationsFilePath, validator, recSys);
+            if (warnings == null) {
+                return;
+            }
+            if (sourceHash != null) {
+                CatalogSnapshot.save(recSys, snapshotPath, sourceHash, warnings);
+            }
+        }
+        List<User> users = recSys.getUsers();
 
-        // Validate movies
-        List<String> movieValidationErrors = validator.parseAndValidateMovies(moviesFilePath);
-        Set<String> validMovieIds = validator.getValidMovieIds(); // valid IDs from movies file
-        ArrayList<Integer> invalidMovieLines = validator.extractErrorLines(movieValidationErrors);
+        // For every user, write recommendations to the output file.
+        System.out.println("\n🎬 Generating recommendations...");
+        int processedUsers = 0;
+        List<List<Movie>> recommendations = recSys.recommendMoviesForUsers(users);
+        try (RecommendationOutput writer = openWriter(recommendationsFilePath)) {
+            for (int i = 0; i < users.size(); i++) {
+                User user = users.get(i);
+                try {
+                    writer.write(user, recommendations.get(i));
+                    System.out.println("   ✅ Processed user: " + user.getName());
+                    processedUsers++;
+                } catch (IOException e) {
+                    System.out.println("   ❌ Error writing recommendations for user: " + user.getName());
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("❌ Error writing recommendations file: " + e.getMessage());
+        }
+
+        System.out.println("\n🎉 Completed! Successfully processed " + processedUsers + " users.");
+        System.out.println("📄 Recommendations saved to: " + recommendationsFilePath);
+    }
+
+    /**
+     * Prints a fancy welcome message for the application.
+     */
+    private static void printWelcomeMessage() {
+        System.out.println("\n" +
+                "╔══════════════════════════════════════════════════════════════╗\n" +
+                "║                                                              ║\n" +
+                "║  🎬 🍿  WELCOME TO REELREC - THE MOVIE RECOMMENDER  🍿 🎬    ║\n" +
+                "║                                                              ║\n" +
+                "╚══════════════════════════════════════════════════════════════╝\n");
+        System.out.println("Your personal movie recommendation system is starting up...\n");
+    }
+
+    /**
+     * Validates and loads the movies and users files, printing any warnings, and applies
+     * user ID errors to the loaded users. Returns the warnings, or null after writing a
+     * critical error to the recommendations file.
+     */
+    private static CatalogSnapshot.Warnings loadAndValidate(String moviesFilePath, String usersFilePath,
+                                                            String recommendationsFilePath, Validator validator,
+                                                            RecommendationSystem recSys) {
+        // Validate and load movies in a single read
+        List<ValidationError> movieValidationErrors = recSys.loadAndValidateMoviesFromFile(moviesFilePath, validator);
         if (!movieValidationErrors.isEmpty()) {
             printValidationWarnings("MOVIE FILE WARNINGS", movieValidationErrors);
             // Check for critical errors
-            for (String error : movieValidationErrors) {
-                if (error.contains("ERROR: File not found") || error.contains("ERROR: Cannot read file")) {
+            for (ValidationError error : movieValidationErrors) {
+                if (error.isCritical()) {
                     try (BufferedWriter writer = new BufferedWriter(new FileWriter(recommendationsFilePath))) {
-                        writer.write(error);
+                        writer.write(error.message());
                     } catch (IOException e) {
                         System.out.println("❌ Error writing error message to recommendations file.");
                     }
-                    return; // Exit program if critical error
+                    return null; // Exit program if critical error
                 }
             }
         }
 
-        // Validate users
-        List<String> userValidationErrors = validator.parseAndValidateUsers(usersFilePath);
+        // Validate and load users in a single read
+        List<ValidationError> userValidationErrors = recSys.loadAndValidateUsersFromFile(usersFilePath, validator);
         Map<String, String> userIdErrors = new HashMap<>();
-        for (String error : userValidationErrors) {
-            if (error.contains("ERROR: User Id")) {
-                Pattern pattern = Pattern.compile("ERROR: User Id \"([^\"]+)\"");
-                Matcher matcher = pattern.matcher(error);
-                if (matcher.find()) {
-                    String userId = matcher.group(1);
-                    userIdErrors.put(userId, error);
-                }
+        for (ValidationError error : userValidationErrors) {
+            // An empty ID matches no user, so it keeps no user from being written
+            if (error.isUserIdError() && !error.value().isEmpty()) {
+                userIdErrors.put(error.value(), error.message());
             }
         }
 
         if (!userValidationErrors.isEmpty()) {
             printValidationWarnings("USER FILE WARNINGS", userValidationErrors);
             // Check for critical errors
-            for (String error : userValidationErrors) {
-                if (error.contains("ERROR: File not found") || error.contains("ERROR: Cannot read file")) {
+            for (ValidationError error : userValidationErrors) {
+                if (error.isCritical()) {
                     try (BufferedWriter writer = new BufferedWriter(new FileWriter(recommendationsFilePath))) {
-                        writer.write(error);
+                        writer.write(error.message());
                     } catch (IOException e) {
                         System.out.println("❌ Error writing error message to recommendations file.");
                     }
-                    return; // Exit program if critical error
+                    return null; // Exit program if critical error
                 }
             }
         }
 
-        // Create RecommendationSystem and load movies/users
-        RecommendationSystem recSys = new RecommendationSystem();
-        try {
-            System.out.println("\n📂 Loading data files...");
-            recSys.loadMoviesFromFile(moviesFilePath, invalidMovieLines);
-            // Process all users, even those with validation errors.
-            recSys.loadUsersFromFile(usersFilePath, new ArrayList<>(), validMovieIds);
-            System.out.println("✅ Data loaded successfully!");
-        } catch (IOException e) {
-            System.out.println("❌ ERROR: Could not load input files: " + e.getMessage());
-            return;
-        }
+        System.out.println("✅ Data loaded successfully!");
 
         // Apply user ID errors to the loaded users.
-        List<User> users = recSys.getUsers();
-        for (User user : users) {
+        for (User user : recSys.getUsers()) {
             if (userIdErrors.containsKey(user.getId())) {
                 user.setErrorMessage(userIdErrors.get(user.getId()));
                 user.clearWatchList(); // Clear watchlist since user is invalid.
             }
         }
-
-        // For every user, write recommendations to the output file.
-        System.out.println("\n🎬 Generating recommendations...");
-        int processedUsers = 0;
-        for (User user : users) {
-            try {
-                recSys.writeRecommendationsToFile(user, recommendationsFilePath);
-                System.out.println("   ✅ Processed user: " + user.getName());
-                processedUsers++;
-            } catch (IOException e) {
-                System.out.println("   ❌ Error writing recommendations for user: " + user.getName());
-            }
-        }
-
-        System.out.println("\n🎉 Completed! Successfully processed " + processedUsers + " users.");
-        System.out.println("📄 Recommendations saved to: " + recommendationsFilePath);
+        return new CatalogSnapshot.Warnings(movieValidationErrors, userValidationErrors);
     }
 
-    /**
-     * Prints a fancy welcome message for the application.
-     */
-    private static void printWelcomeMessage() {
-        System.out.println("\n" +
-                "╔══════════════════════════════════════════════════════════════╗\n" +
-                "║                                                              ║\n" +
-                "║  🎬 🍿  WELCOME TO REELREC - THE MOVIE RECOMMENDER  🍿 🎬    ║\n" +
-                "║                                                              ║\n" +
-                "╚══════════════════════════════════════════════════════════════╝\n");
-        System.out.println("Your personal movie recommendation system is starting up...\n");
+    // Text is appended to the cleared file; the compact format replaces it
+    private static RecommendationOutput openWriter(String recommendationsFilePath) throws IOException {
+        if (CompactRecommendationWriter.requested()) {
+            return new CompactRecommendationWriter(recommendationsFilePath);
+        }
+        return new RecommendationWriter(recommendationsFilePath, true);
     }
 
     /**
      * Prints validation warnings in a more readable format.
      */
-    private static void printValidationWarnings(String title, List<String> warnings) {
+    private static void printValidationWarnings(String title, List<ValidationError> warnings) {
         System.out.println("\n⚠️ " + title + " ⚠️");
-        for (String warning : warnings) {
+        for (ValidationError warning : warnings) {
             System.out.println("   • " + warning);
         }
         System.out.println();
@@ -0,0 +1,215 @@
+package com.reelrec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the lines of a file through a memory mapping, with the same line breaks as
+ * BufferedReader.readLine. ASCII lines are returned as {@link AsciiLine} views of the
+ * mapping; a line with other bytes is decoded with the platform charset, as FileReader
+ * would. Files larger than one mapping are mapped a window at a time. A reader can
+ * also be limited to a byte range of the file that starts and ends on line starts,
+ * see {@link #split}.
+ *
+ * A file that may be truncated while it is read, such as one being hot-reloaded, must
+ * be read without the mapping: touching a truncated mapping crashes the JVM, and on
+ * Windows a mapped file cannot be written until the mapping is garbage collected.
+ * Unmapped, the windows are read into heap buffers instead, and a truncated file
+ * throws an IOException.
+ */
+final class MappedLineReader implements Closeable {
+
+    private static final int WINDOW_SIZE = 1 << 30;
+    private static final int READ_SIZE = 1 << 16; // Unmapped window size, doubled for longer lines
+
+    private final FileChannel channel;
+    private final long end; // End of the range being read
+    private final boolean mapped;
+    private int windowSize;
+    private ByteBuffer window;
+    private long windowStart;
+    private long position; // Start of the next line
+    // Two views, so the previous line stays readable while the next one is read
+    private final byte[][] scratch = {new byte[64]};
+    private final AsciiLine[] views = {new AsciiLine(scratch), new AsciiLine(scratch)};
+    private int nextView;
+
+    MappedLineReader(String filePath) throws IOException {
+        this(filePath, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads the lines in the byte range [start, end) of the file, which must both be
+     * line starts (or the end of the file).
+     */
+    MappedLineReader(String filePath, long start, long end) throws IOException {
+        this(filePath, start, end, true);
+    }
+
+    /**
+     * Reads the lines in the byte range [start, end) like {@link #MappedLineReader(String,
+     * long, long)}, through a mapping or, if mapped is false, with FileChannel reads.
+     */
+    MappedLineReader(String filePath, long start, long end, boolean mapped) throws IOException {
+        this.mapped = mapped;
+        this.windowSize = mapped ? WINDOW_SIZE : READ_SIZE;
+        this.channel = open(filePath);
+        this.end = Math.min(end, channel.size());
+        this.position = start;
+        map(Math.min(start, this.end));
+    }
+
+    private static FileChannel open(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        if (!Files.isRegularFile(path)) {
+            throw new IOException("Not a readable file: " + filePath);
+        }
+        return FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    /**
+     * Splits the file into at most {@code parts} byte ranges of about equal size that
+     * start on line starts. Returns the range boundaries, from 0 to the file size;
+     * ranges may be empty when lines are longer than a range.
+     */
+    static long[] split(String filePath, int parts) throws IOException {
+        try (FileChannel channel = open(filePath)) {
+            long size = channel.size();
+            long[] bounds = new long[parts + 1];
+            bounds[parts] = size;
+            for (int part = 1; part < parts; part++) {
+                long offset = Math.max(bounds[part - 1], size * part / parts);
+                bounds[part] = offset == 0 ? 0 : lineStart(channel, offset, size);
+            }
+            return bounds;
+        }
+    }
+
+    // First line start at or after the offset, which is past the first byte
+    private static long lineStart(FileChannel channel, long offset, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        boolean afterCarriageReturn = false;
+        // Scan from the byte before the offset, in case the offset is a line start itself
+        for (long position = offset - 1; position < size; ) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (afterCarriageReturn) {
+                    return b == '\n' ? position + i + 1 : position + i;
+                }
+                if (b == '\n') {
+                    return position + i + 1;
+                }
+                afterCarriageReturn = b == '\r';
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    // Offset of the next line to be read
+    long position() {
+        return position;
+    }
+
+    /**
+     * Returns the next line without its terminator, or null at the end of the range.
+     * An ASCII line is a view that stays valid until the line after it has been read.
+     */
+    CharSequence readLine() throws IOException {
+        if (position >= end) {
+            return null;
+        }
+        if (position < windowStart || position >= windowStart + window.limit()) {
+            map(position);
+        }
+        int start = (int) (position - windowStart);
+        int stop = start;
+        int bits = 0;
+        while (true) {
+            if (stop == window.limit()) {
+                if (windowStart + stop >= end) {
+                    break; // Last line, without a terminator
+                }
+                if (start == 0) {
+                    if (windowSize == WINDOW_SIZE) {
+                        throw new IOException("Line longer than " + WINDOW_SIZE + " bytes at offset " + position);
+                    }
+                    windowSize = (int) Math.min(WINDOW_SIZE, windowSize * 2L);
+                }
+                // Continue the line in a window that starts with it
+                map(position);
+                stop -= start;
+                start = 0;
+                continue;
+            }
+            byte b = window.get(stop);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            bits |= b;
+            stop++;
+        }
+
+        long next = windowStart + stop;
+        if (next < end) {
+            next++;
+            if (window.get(stop) == '\r' && next < end && byteAt(next) == '\n') {
+                next++;
+            }
+        }
+        position = next;
+
+        if (bits < 0) { // A byte above 0x7F
+            byte[] bytes = new byte[stop - start];
+            window.get(start, bytes);
+            return new String(bytes, Charset.defaultCharset());
+        }
+        AsciiLine line = views[nextView];
+        nextView ^= 1;
+        line.reset(window, start, stop);
+        return line;
+    }
+
+    private byte byteAt(long offset) throws IOException {
+        if (offset < windowStart + window.limit()) {
+            return window.get((int) (offset - windowStart));
+        }
+        ByteBuffer one = ByteBuffer.allocate(1);
+        channel.read(one, offset);
+        return one.get(0);
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        int length = (int) Math.min(windowSize, end - start);
+        if (mapped) {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            return;
+        }
+        // A new buffer, so the previous line's view stays readable
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new IOException("File truncated while it was read, at offset " + (start + buffer.position()));
+            }
+        }
+        window = buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,381 @@
+package com.reelrec;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and fixed-bucket histograms for the stages of a run. Validation, loading,
+ * recommending and writing record into {@link #global()}, which keeps counting for the
+ * life of the JVM; a run takes a {@link #snapshot()} when it starts and writes the
+ * difference as its summary, see {@link #writeSummary(String, Snapshot)}.
+ *
+ * <p>Timers are histograms of nanoseconds. A percentile is estimated as the upper bound
+ * of the bucket it falls in, or the last bound if it is above all of them.
+ *
+ * <p>{@link #registerMBean()} exposes the global registry over JMX as {@value #OBJECT_NAME},
+ * with one attribute per counter and {@code .count}, {@code .sum}, {@code .p50} and
+ * {@code .p99} attributes per histogram.
+ */
+public final class MetricsRegistry {
+
+    public static final String OBJECT_NAME = "com.reelrec:type=Metrics";
+    // Where the programs write the summary of their run, if set
+    public static final String SUMMARY_PROPERTY = "reelrec.metrics.summary";
+
+    // 1-2-5 steps from 1 microsecond to 50 seconds
+    static final long[] TIME_BOUNDS = steps(1_000, 50_000_000_000L);
+    // Powers of two up to 64K, for sizes
+    static final long[] SIZE_BOUNDS = powersOfTwo(1 << 16);
+
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    // A histogram of nanoseconds
+    public Histogram timer(String name) {
+        return histogram(name, "ns", TIME_BOUNDS);
+    }
+
+    // A histogram of sizes, e.g. of candidate sets
+    public Histogram sizes(String name) {
+        return histogram(name, "", SIZE_BOUNDS);
+    }
+
+    // Returns the histogram with the name, created with these bounds if it is new
+    public Histogram histogram(String name, String unit, long[] bounds) {
+        return histograms.computeIfAbsent(name, n -> new Histogram(unit, bounds));
+    }
+
+    public static final class Counter {
+        private final LongAdder count = new LongAdder();
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long n) {
+            count.add(n);
+        }
+
+        public long get() {
+            return count.sum();
+        }
+    }
+
+    public static final class Histogram {
+        private final String unit;
+        private final long[] bounds;      // Ascending upper bounds, inclusive
+        private final LongAdder[] buckets; // One more than the bounds, for larger values
+        private final LongAdder sum = new LongAdder();
+
+        Histogram(String unit, long[] bounds) {
+            this.unit = unit;
+            this.bounds = bounds.clone();
+            this.buckets = new LongAdder[bounds.length + 1];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void record(long value) {
+            int bucket = Arrays.binarySearch(bounds, value);
+            buckets[bucket >= 0 ? bucket : -bucket - 1].increment();
+            sum.add(value);
+        }
+
+        // Records the nanoseconds since start, a System.nanoTime() value
+        public void recordSince(long start) {
+            record(System.nanoTime() - start);
+        }
+
+        HistogramSnapshot snapshot() {
+            long[] counts = new long[buckets.length];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return new HistogramSnapshot(unit, bounds, counts, sum.sum());
+        }
+    }
+
+    public record HistogramSnapshot(String unit, long[] bounds, long[] buckets, long sum) {
+
+        public long count() {
+            long count = 0;
+            for (long bucket : buckets) {
+                count += bucket;
+            }
+            return count;
+        }
+
+        // The estimated value below which the fraction q of the values fall, or 0 if there are none
+        public long percentile(double q) {
+            long count = count();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int i = 0; i < bounds.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return bounds[i];
+                }
+            }
+            return bounds[bounds.length - 1];
+        }
+
+        HistogramSnapshot minus(HistogramSnapshot earlier) {
+            long[] counts = buckets.clone();
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] -= earlier.buckets[i];
+            }
+            return new HistogramSnapshot(unit, bounds, counts, sum - earlier.sum);
+        }
+    }
+
+    /**
+     * The values of a registry at one moment, sorted by name.
+     */
+    public record Snapshot(Map<String, Long> counters, Map<String, HistogramSnapshot> histograms) {
+
+        // What was recorded between the earlier snapshot and this one
+        public Snapshot since(Snapshot earlier) {
+            Map<String, Long> counted = new TreeMap<>();
+            counters.forEach((name, count) -> counted.put(name, count - earlier.counters.getOrDefault(name, 0L)));
+            Map<String, HistogramSnapshot> recorded = new TreeMap<>();
+            histograms.forEach((name, histogram) -> {
+                HistogramSnapshot before = earlier.histograms.get(name);
+                recorded.put(name, before == null ? histogram : histogram.minus(before));
+            });
+            return new Snapshot(counted, recorded);
+        }
+
+        /**
+         * Returns the snapshot as JSON: {@code {"counters":{name:count},"histograms":{name:
+         * {"unit","count","sum","p50","p90","p99","bounds","buckets"}}}}, where buckets has
+         * one more entry than bounds, for the values above the last bound.
+         */
+        public String toJson() {
+            StringBuilder json = new StringBuilder("{\"counters\":{");
+            String separator = "";
+            for (Map.Entry<String, Long> counter : counters.entrySet()) {
+                json.append(separator).append('"').append(counter.getKey()).append("\":").append(counter.getValue());
+                separator = ",";
+            }
+            json.append("},\"histograms\":{");
+            separator = "";
+            for (Map.Entry<String, HistogramSnapshot> entry : histograms.entrySet()) {
+                HistogramSnapshot histogram = entry.getValue();
+                json.append(separator).append('"').append(entry.getKey()).append("\":{")
+                        .append("\"unit\":\"").append(histogram.unit()).append('"')
+                        .append(",\"count\":").append(histogram.count())
+                        .append(",\"sum\":").append(histogram.sum())
+                        .append(",\"p50\":").append(histogram.percentile(0.5))
+                        .append(",\"p90\":").append(histogram.percentile(0.9))
+                        .append(",\"p99\":").append(histogram.percentile(0.99))
+                        .append(",\"bounds\":");
+                array(json, histogram.bounds());
+                json.append(",\"buckets\":");
+                array(json, histogram.buckets());
+                json.append('}');
+                separator = ",";
+            }
+            return json.append("}}").toString();
+        }
+
+        private static void array(StringBuilder json, long[] values) {
+            json.append('[');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append(values[i]);
+            }
+            json.append(']');
+        }
+    }
+
+    public Snapshot snapshot() {
+        Map<String, Long> counted = new TreeMap<>();
+        counters.forEach((name, counter) -> counted.put(name, counter.get()));
+        Map<String, HistogramSnapshot> recorded = new TreeMap<>();
+        histograms.forEach((name, histogram) -> recorded.put(name, histogram.snapshot()));
+        return new Snapshot(counted, recorded);
+    }
+
+    /**
+     * Writes what the global registry recorded since the start snapshot to the file, as
+     * {@link Snapshot#toJson()}.
+     */
+    public static void writeSummary(String path, Snapshot start) throws IOException {
+        String json = GLOBAL.snapshot().since(start).toJson();
+        try (Writer writer = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
+            writer.write(json);
+            writer.write(System.lineSeparator());
+        }
+    }
+
+    /**
+     * Writes the summary to the file named by {@value #SUMMARY_PROPERTY}, if it is set.
+     * A file that cannot be written is reported, not thrown.
+     */
+    static void writeRequestedSummary(Snapshot start) {
+        String path = System.getProperty(SUMMARY_PROPERTY);
+        if (path == null) {
+            return;
+        }
+        try {
+            writeSummary(path, start);
+        } catch (IOException e) {
+            System.out.println("❌ Error writing metrics summary: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Registers the global registry with the platform MBean server, once.
+     */
+    public static synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MBean(GLOBAL), name);
+            }
+        } catch (JMException e) {
+            System.out.println("⚠️ Could not register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    // Read-only attributes for the current counters and histograms
+    private static final class MBean implements DynamicMBean {
+        private final MetricsRegistry registry;
+
+        MBean(MetricsRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Counter counter = registry.counters.get(attribute);
+            if (counter != null) {
+                return counter.get();
+            }
+            int dot = attribute.lastIndexOf('.');
+            Histogram histogram = dot < 0 ? null : registry.histograms.get(attribute.substring(0, dot));
+            if (histogram != null) {
+                HistogramSnapshot snapshot = histogram.snapshot();
+                switch (attribute.substring(dot + 1)) {
+                    case "count":
+                        return snapshot.count();
+                    case "sum":
+                        return snapshot.sum();
+                    case "p50":
+                        return snapshot.percentile(0.5);
+                    case "p99":
+                        return snapshot.percentile(0.99);
+                    default:
+                        break;
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList values = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    values.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    // Left out, as the interface expects
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName), "No operations");
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String name : new TreeMap<>(registry.counters).keySet()) {
+                attributes.add(attribute(name, "Counter"));
+            }
+            for (String name : new TreeMap<>(registry.histograms).keySet()) {
+                for (String field : new String[] {"count", "sum", "p50", "p99"}) {
+                    attributes.add(attribute(name + "." + field, "Histogram " + field));
+                }
+            }
+            return new MBeanInfo(MetricsRegistry.class.getName(), "ReelRec pipeline metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+
+        private static MBeanAttributeInfo attribute(String name, String description) {
+            return new MBeanAttributeInfo(name, "long", description, true, false, false);
+        }
+    }
+
+    private static long[] steps(long from, long to) {
+        List<Long> bounds = new ArrayList<>();
+        for (long decade = from; decade <= to; decade *= 10) {
+            for (long step : new long[] {1, 2, 5}) {
+                if (decade * step <= to) {
+                    bounds.add(decade * step);
+                }
+            }
+        }
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long[] powersOfTwo(long to) {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        for (long bound = 1; bound <= to; bound *= 2) {
+            bounds.add(bound);
+        }
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -6,6 +6,11 @@ public class Movie implements Comparable<Movie> {
     private String id;
     private String name;
     private String[] genres;
+    // Sort key parsed from the ID once, so compareTo does not run regexes on every call
+    private String idLetters;
+    private String idDigits;
+    private int idNumber;
+    private boolean idNumberValid;
 
     public Movie(String id, String name) {
         if (id == null || name == null) {
@@ -14,6 +19,7 @@ public class Movie implements Comparable<Movie> {
         this.id = id;
         this.name = name;
         this.genres = new String[0];
+        parseSortKey();
     }
     
     public Movie(String id, String name, String[] genre) {
@@ -22,6 +28,7 @@ public class Movie implements Comparable<Movie> {
         }
         this.id = id;
         this.name = name;
+        parseSortKey();
         // Create a defensive copy of the genre array
         this.genres = Arrays.copyOf(genre, genre.length);
     }
@@ -45,6 +52,7 @@ public class Movie implements Comparable<Movie> {
             throw new NullPointerException("ID cannot be null");
         }
         this.id = id;
+        parseSortKey();
     }
 
     public void setName(String name) {
@@ -68,27 +76,39 @@ public class Movie implements Comparable<Movie> {
             throw new NullPointerException("Cannot compare with null Movie");
         }
         
-        // Split IDs into letter prefix and numeric suffix
-        String thisLetters = id.replaceAll("\\d", ""); // Extract letter part
-        String otherLetters = other.id.replaceAll("\\d", "");
-        
         // Compare prefixes first
-        int prefixComparison = thisLetters.compareTo(otherLetters);
+        int prefixComparison = idLetters.compareTo(other.idLetters);
         if (prefixComparison != 0) {
             return prefixComparison;
         }
         
-        // If prefixes are equal, extract numeric parts and compare numerically
-        String thisNumberStr = id.replaceAll("[^\\d]", ""); // Extract numeric part
-        String otherNumberStr = other.id.replaceAll("[^\\d]", "");
-        
+        // If prefixes are equal, compare the numeric parts numerically
+        if (idNumberValid && other.idNumberValid) {
+            return Integer.compare(idNumber, other.idNumber);
+        }
+        // Fall back to string comparison if number parsing fails
+        return idDigits.compareTo(other.idDigits);
+    }
+
+    // Splits the ID into its letter part and its digit part, and parses the digits
+    private void parseSortKey() {
+        StringBuilder letters = new StringBuilder(id.length());
+        StringBuilder digits = new StringBuilder(id.length());
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else {
+                letters.append(c);
+            }
+        }
+        idLetters = letters.toString();
+        idDigits = digits.toString();
         try {
-            int thisNumber = Integer.parseInt(thisNumberStr);
-            int otherNumber = Integer.parseInt(otherNumberStr);
-            return Integer.compare(thisNumber, otherNumber);
+            idNumber = Integer.parseInt(idDigits);
+            idNumberValid = true;
         } catch (NumberFormatException e) {
-            // Fall back to string comparison if number parsing fails
-            return thisNumberStr.compareTo(otherNumberStr);
+            idNumberValid = false;
         }
     }
 
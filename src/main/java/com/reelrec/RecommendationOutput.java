@@ -0,0 +1,17 @@
+package com.reelrec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where a run writes its recommendation records, one user at a time, in the text
+ * format of {@link RecommendationWriter} or the binary one of
+ * {@link CompactRecommendationWriter}.
+ */
+public interface RecommendationOutput extends Closeable {
+
+    void write(User user, List<Movie> recommendations) throws IOException;
+
+    void flush() throws IOException;
+}
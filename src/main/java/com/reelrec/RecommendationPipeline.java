@@ -0,0 +1,177 @@
+package com.reelrec;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Computes recommendations for submitted users on an executor and hands them to a
+ * {@link ResultWriter} on one writer thread, in submission order, so computing and
+ * writing overlap. Every user gets a sequence number; the writer thread takes finished
+ * results from a bounded queue and puts them back in order. At most {@code capacity}
+ * users are in flight between submit and write: submit blocks until the writer has
+ * caught up, which caps memory when users are read from a stream.
+ */
+public final class RecommendationPipeline {
+
+    /**
+     * Writes one user's recommendations. Called on the writer thread only.
+     */
+    @FunctionalInterface
+    public interface ResultWriter {
+        void write(User user, List<Movie> recommendations) throws IOException;
+    }
+
+    // A finished user, or the end marker carrying the number of users submitted
+    private static final class Result {
+        final long sequence;
+        final User user;
+        final List<Movie> recommendations;
+        final Throwable failure;
+        final boolean end;
+
+        Result(long sequence, User user, List<Movie> recommendations, Throwable failure) {
+            this.sequence = sequence;
+            this.user = user;
+            this.recommendations = recommendations;
+            this.failure = failure;
+            this.end = false;
+        }
+
+        Result(long submitted) {
+            this.sequence = submitted;
+            this.user = null;
+            this.recommendations = null;
+            this.failure = null;
+            this.end = true;
+        }
+    }
+
+    private final RecommendationSystem recSys;
+    private final Executor executor;
+    private final ResultWriter resultWriter;
+    private final Semaphore inFlight;
+    private final BlockingQueue<Result> finished;
+    private final Result[] pending; // Results waiting for earlier ones, by sequence % capacity
+    private final Thread writerThread;
+    private long submitted;
+    private long written; // Only touched by the writer thread until it has been joined
+    private volatile Throwable failure;
+
+    public RecommendationPipeline(RecommendationSystem recSys, Executor executor, int capacity,
+                                  ResultWriter resultWriter) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.recSys = recSys;
+        this.executor = executor;
+        this.resultWriter = resultWriter;
+        this.inFlight = new Semaphore(capacity);
+        // Never full: at most capacity results plus the end marker
+        this.finished = new ArrayBlockingQueue<>(capacity + 1);
+        this.pending = new Result[capacity];
+        this.writerThread = new Thread(this::writeInOrder, "reelrec-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queues a user for computing and writing, waiting while capacity users are in flight.
+     */
+    public void submit(User user) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while recommending movies", e);
+        }
+        long sequence = submitted++;
+        try {
+            executor.execute(() -> {
+                Result result;
+                try {
+                    result = new Result(sequence, user, recSys.getRecommendations(user).getMovies(), null);
+                } catch (Throwable e) { // Even an Error has to reach the writer, or finish never returns
+                    result = new Result(sequence, user, null, e);
+                }
+                finished.add(result);
+            });
+        } catch (RejectedExecutionException e) {
+            // The sequence number still has to reach the writer; finish throws the rejection
+            finished.add(new Result(sequence, user, null, e));
+        }
+    }
+
+    /**
+     * Waits until every submitted user has been written and returns how many were.
+     * Throws the first exception or error of the ResultWriter or of computing
+     * recommendations, or the executor's rejection of a user; the users after it are
+     * not written.
+     */
+    public long finish() throws IOException {
+        finished.add(new Result(submitted));
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing recommendations");
+        }
+        Throwable failure = this.failure;
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+        return written;
+    }
+
+    private void writeInOrder() {
+        long next = 0;
+        long end = -1; // Number of users to write, once the end marker has arrived
+        try {
+            while (next != end) {
+                Result result = finished.take();
+                if (result.end) {
+                    end = result.sequence;
+                    continue;
+                }
+                pending[(int) (result.sequence % pending.length)] = result;
+                Result ready;
+                while ((ready = pending[(int) (next % pending.length)]) != null && ready.sequence == next) {
+                    pending[(int) (next % pending.length)] = null;
+                    write(ready);
+                    next++;
+                    inFlight.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("Interrupted while writing recommendations");
+        }
+    }
+
+    // After a failure the remaining users are only released, so submit never blocks for good
+    private void write(Result result) {
+        if (failure != null) {
+            return;
+        }
+        try {
+            if (result.failure != null) {
+                failure = result.failure;
+                return;
+            }
+            resultWriter.write(result.user, result.recommendations);
+            written++;
+        } catch (Throwable e) {
+            failure = e;
+        }
+    }
+}
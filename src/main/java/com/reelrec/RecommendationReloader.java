@@ -0,0 +1,225 @@
+package com.reelrec;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps a {@link RecommendationSystem} loaded from a movies file and a users file for a
+ * long-running process, and reloads it when either file changes. A reload builds a new
+ * RecommendationSystem on the watcher thread and swaps it in atomically: callers that got
+ * the old one from {@link #current()} keep using it, and nobody sees a half-loaded one.
+ * If a reload fails the current RecommendationSystem stays in place.
+ *
+ * Changes are detected with a {@link WatchService} on the files' directories. Editors
+ * often write a file in several steps, so a reload waits until the files have been
+ * quiet for a short while.
+ */
+public final class RecommendationReloader implements AutoCloseable {
+
+    static final long QUIET_MILLIS = 200;
+
+    /**
+     * Told about every reload, on the thread that ran it.
+     */
+    public interface Listener {
+        default void reloaded(RecommendationSystem recSys, long nanos) {
+        }
+
+        default void failed(Exception e, long nanos) {
+        }
+    }
+
+    private final String moviesFilePath;
+    private final String usersFilePath;
+    private final Listener listener;
+    private final AtomicReference<RecommendationSystem> current = new AtomicReference<>();
+    private final Object reloadLock = new Object(); // One reload at a time, so the newest files win
+    private volatile long lastReloadNanos;
+    private volatile Exception lastFailure;
+    private volatile long reloads;
+    private WatchService watchService;
+    private Thread watcherThread;
+
+    public RecommendationReloader(String moviesFilePath, String usersFilePath) {
+        this(moviesFilePath, usersFilePath, new Listener() { });
+    }
+
+    public RecommendationReloader(String moviesFilePath, String usersFilePath, Listener listener) {
+        this.moviesFilePath = moviesFilePath;
+        this.usersFilePath = usersFilePath;
+        this.listener = listener;
+    }
+
+    /**
+     * Loads the files and starts watching them. Throws if the first load fails, since
+     * there is no earlier RecommendationSystem to keep.
+     */
+    public synchronized void start() throws IOException {
+        if (watcherThread != null) {
+            throw new IllegalStateException("Already started");
+        }
+        if (!reload()) {
+            Exception e = lastFailure;
+            throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        Map<Path, Set<Path>> watched = new HashMap<>(); // File names by directory
+        for (String filePath : new String[] {moviesFilePath, usersFilePath}) {
+            Path path = Paths.get(filePath).toAbsolutePath();
+            watched.computeIfAbsent(path.getParent(), directory -> new HashSet<>()).add(path.getFileName());
+        }
+        for (Path directory : watched.keySet()) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        watcherThread = new Thread(() -> watch(watched), "reelrec-reloader");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    /**
+     * Returns the RecommendationSystem of the last successful load.
+     */
+    public RecommendationSystem current() {
+        return current.get();
+    }
+
+    /**
+     * Loads the files into a new RecommendationSystem and swaps it in. Returns false,
+     * keeping the current one, if loading failed or the files have critical errors.
+     */
+    public boolean reload() {
+        synchronized (reloadLock) {
+            long start = System.nanoTime();
+            try {
+                RecommendationSystem recSys = load(moviesFilePath, usersFilePath);
+                long nanos = System.nanoTime() - start;
+                current.set(recSys);
+                lastReloadNanos = nanos;
+                lastFailure = null;
+                reloads++;
+                listener.reloaded(recSys, nanos);
+                return true;
+            } catch (IOException | RuntimeException e) {
+                lastFailure = e;
+                listener.failed(e, System.nanoTime() - start);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Returns how long the last successful reload took, in nanoseconds.
+     */
+    public long getLastReloadNanos() {
+        return lastReloadNanos;
+    }
+
+    /**
+     * Returns why the last reload failed, or null if it succeeded.
+     */
+    public Exception getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Returns the number of successful loads, the first one included.
+     */
+    public long getReloadCount() {
+        return reloads;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            try {
+                watcherThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Validates and loads the files like a normal run does, with user ID errors applied.
+     * Throws an IOException with the message of the first critical validation error.
+     * The files are read without a memory mapping, since they may be rewritten meanwhile;
+     * a file truncated while it is read throws an IOException and the next change reloads it.
+     */
+    static RecommendationSystem load(String moviesFilePath, String usersFilePath) throws IOException {
+        Validator validator = new Validator();
+        RecommendationSystem recSys = new RecommendationSystem();
+        recSys.setMapFiles(false);
+        throwCritical(recSys.loadAndValidateMoviesFromFile(moviesFilePath, validator));
+        List<ValidationError> userErrors = recSys.loadAndValidateUsersFromFile(usersFilePath, validator);
+        throwCritical(userErrors);
+
+        Map<String, String> userIdErrors = new HashMap<>();
+        for (ValidationError error : userErrors) {
+            if (error.isUserIdError() && !error.value().isEmpty()) {
+                userIdErrors.put(error.value(), error.message());
+            }
+        }
+        for (User user : recSys.getUsers()) {
+            String message = userIdErrors.get(user.getId());
+            if (message != null) {
+                user.setErrorMessage(message);
+                user.clearWatchList();
+            }
+        }
+        return recSys;
+    }
+
+    private static void throwCritical(List<ValidationError> errors) throws IOException {
+        for (ValidationError error : errors) {
+            if (error.isCritical()) {
+                throw new IOException(error.message());
+            }
+        }
+    }
+
+    private void watch(Map<Path, Set<Path>> watched) {
+        try {
+            while (true) {
+                if (changed(watchService.take(), watched)) {
+                    // Wait for the files to be quiet before reloading
+                    WatchKey key;
+                    while ((key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                        changed(key, watched);
+                    }
+                    reload();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Closed
+        }
+    }
+
+    // Drains the key's events and returns whether one of them was about a watched file
+    private static boolean changed(WatchKey key, Map<Path, Set<Path>> watched) {
+        Set<Path> names = watched.getOrDefault((Path) key.watchable(), Set.of());
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || names.contains((Path) event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+}
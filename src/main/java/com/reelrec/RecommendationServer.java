@@ -0,0 +1,290 @@
+package com.reelrec;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Serves recommendations over HTTP from an in-memory {@link RecommendationSystem}:
+ * <ul>
+ *   <li>{@code GET /users/{id}/recommendations}: the user and their recommendations</li>
+ *   <li>{@code GET /movies/{id}/similar}: the movie and the movies sharing a genre with it</li>
+ * </ul>
+ * Responses are JSON; unknown users or movies get 404, and a path with a malformed
+ * percent escape gets 400. IDs are percent-decoded like any path segment, so a '+'
+ * stays a plus. Every request asks the supplier
+ * for the RecommendationSystem once, so with {@link RecommendationReloader#current()}
+ * a request is answered from one snapshot even while a reload swaps in the next.
+ * Queries go through a {@link CoalescingRecommender}, so concurrent requests for the
+ * same user or movie are computed once.
+ *
+ * <p>Run as a program to serve two files, reloading them when they change:
+ * {@code RecommendationServer <movies file> <users file> [port]}. Set
+ * {@value #BATCH_WINDOW_PROPERTY} to a number of microseconds to also batch requests.
+ */
+public final class RecommendationServer implements AutoCloseable {
+
+    public static final int DEFAULT_PORT = 8080;
+    public static final String BATCH_WINDOW_PROPERTY = "reelrec.server.batchWindowMicros";
+
+    static {
+        // Headers and body are separate writes, which without TCP_NODELAY wait ~40 ms for
+        // a delayed ACK. Read once when the server implementation loads, so set it first.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final Supplier<RecommendationSystem> snapshots;
+    private final CoalescingRecommender queries;
+
+    /**
+     * Binds the server; requests are handled on the executor once it is started. On a
+     * JDK with virtual threads, {@code Executors.newVirtualThreadPerTaskExecutor()} gives
+     * each request its own thread; {@link #newRequestExecutor()} is a pool for JDK 17.
+     */
+    public RecommendationServer(Supplier<RecommendationSystem> snapshots, InetSocketAddress address,
+                                ExecutorService executor) throws IOException {
+        this(snapshots, address, executor, new CoalescingRecommender());
+    }
+
+    /**
+     * Binds the server with the given query layer, e.g. one that batches requests.
+     */
+    public RecommendationServer(Supplier<RecommendationSystem> snapshots, InetSocketAddress address,
+                                ExecutorService executor, CoalescingRecommender queries) throws IOException {
+        this.snapshots = snapshots;
+        this.queries = queries;
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/users/", exchange -> handle(exchange, this::userRecommendations));
+        server.createContext("/movies/", exchange -> handle(exchange, this::similarMovies));
+        server.createContext("/", exchange -> handle(exchange, (recSys, path) -> null));
+    }
+
+    /**
+     * Returns a pool of daemon threads, two per processor, for handling requests.
+     */
+    public static ExecutorService newRequestExecutor() {
+        AtomicInteger threads = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2), task -> {
+            Thread thread = new Thread(task, "reelrec-http-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests; the executor and the query layer are left to their owner.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    // Answers a GET path with the body of a 200 response, or null for 404
+    @FunctionalInterface
+    private interface Route {
+        String answer(RecommendationSystem recSys, String[] path);
+    }
+
+    // A request the client got wrong, answered with 400
+    private static final class BadRequestException extends RuntimeException {
+        BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    private void handle(HttpExchange exchange, Route route) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                send(exchange, 405, error("Method not allowed"));
+                return;
+            }
+            RecommendationSystem recSys = snapshots.get();
+            if (recSys == null) {
+                send(exchange, 503, error("No data loaded"));
+                return;
+            }
+            String body = route.answer(recSys, exchange.getRequestURI().getRawPath().split("/"));
+            if (body == null) {
+                send(exchange, 404, error("Not found"));
+            } else {
+                send(exchange, 200, body);
+            }
+        } catch (BadRequestException e) {
+            send(exchange, 400, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            send(exchange, 500, error("Internal error"));
+        }
+    }
+
+    // /users/{id}/recommendations
+    private String userRecommendations(RecommendationSystem recSys, String[] path) {
+        if (path.length != 4 || !path[3].equals("recommendations")) {
+            return null;
+        }
+        User user = recSys.getUserById(decode(path[2]));
+        if (user == null) {
+            return null;
+        }
+        StringBuilder json = new StringBuilder("{\"user\":{\"id\":");
+        string(json, user.getId());
+        json.append(",\"name\":");
+        string(json, user.getName());
+        json.append("},\"error\":");
+        string(json, user.getErrorMessage());
+        json.append(",\"recommendations\":");
+        movies(json, queries.recommendations(recSys, user).join());
+        return json.append('}').toString();
+    }
+
+    // /movies/{id}/similar
+    private String similarMovies(RecommendationSystem recSys, String[] path) {
+        if (path.length != 4 || !path[3].equals("similar")) {
+            return null;
+        }
+        Movie movie = recSys.getMovieById(decode(path[2]));
+        if (movie == null) {
+            return null;
+        }
+        StringBuilder json = new StringBuilder("{\"movie\":");
+        movie(json, movie);
+        json.append(",\"similar\":");
+        movies(json, queries.similarMovies(recSys, movie).join());
+        return json.append('}').toString();
+    }
+
+    // Percent-decodes a raw path segment as UTF-8; unlike URLDecoder, a '+' is left alone
+    static String decode(String segment) {
+        int percent = segment.indexOf('%');
+        if (percent < 0) {
+            return segment;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(segment.length());
+        int from = 0;
+        while (percent >= 0) {
+            bytes.writeBytes(segment.substring(from, percent).getBytes(StandardCharsets.UTF_8));
+            int high = percent + 2 < segment.length() ? Character.digit(segment.charAt(percent + 1), 16) : -1;
+            int low = high < 0 ? -1 : Character.digit(segment.charAt(percent + 2), 16);
+            if (low < 0) {
+                throw new BadRequestException("Malformed escape in path segment: " + segment);
+            }
+            bytes.write(high << 4 | low);
+            from = percent + 3;
+            percent = segment.indexOf('%', from);
+        }
+        bytes.writeBytes(segment.substring(from).getBytes(StandardCharsets.UTF_8));
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String error(String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        string(json, message);
+        return json.append('}').toString();
+    }
+
+    private static void movies(StringBuilder json, List<Movie> movies) {
+        json.append('[');
+        for (int i = 0; i < movies.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            movie(json, movies.get(i));
+        }
+        json.append(']');
+    }
+
+    private static void movie(StringBuilder json, Movie movie) {
+        json.append("{\"id\":");
+        string(json, movie.getID());
+        json.append(",\"title\":");
+        string(json, movie.getName());
+        json.append('}');
+    }
+
+    // Appends a JSON string literal, or null
+    static void string(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: RecommendationServer <movies file> <users file> [port]");
+            return;
+        }
+        int port = args.length >= 3 ? Integer.parseInt(args[2]) : DEFAULT_PORT;
+        RecommendationReloader reloader = new RecommendationReloader(args[0], args[1], new RecommendationReloader.Listener() {
+            @Override
+            public void reloaded(RecommendationSystem recSys, long nanos) {
+                System.out.printf("✅ Loaded %d users in %d ms%n", recSys.getUsers().size(), nanos / 1_000_000);
+            }
+
+            @Override
+            public void failed(Exception e, long nanos) {
+                System.out.println("❌ Error loading data files: " + e.getMessage());
+            }
+        });
+        try {
+            MetricsRegistry.registerMBean();
+            reloader.start();
+            long batchWindow = Long.getLong(BATCH_WINDOW_PROPERTY, 0);
+            CoalescingRecommender queries = batchWindow == 0 ? new CoalescingRecommender()
+                    : new CoalescingRecommender(batchWindow, TimeUnit.MICROSECONDS,
+                            CoalescingRecommender.DEFAULT_MAX_BATCH, ForkJoinPool.commonPool());
+            RecommendationServer server = new RecommendationServer(reloader::current,
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), port), newRequestExecutor(), queries);
+            server.start();
+            System.out.println("🎬 Serving recommendations on http://localhost:" + server.getPort());
+        } catch (IOException e) {
+            System.out.println("❌ Error starting server: " + e.getMessage());
+        }
+    }
+}
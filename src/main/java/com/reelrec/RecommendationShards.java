@@ -0,0 +1,130 @@
+package com.reelrec;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Writes recommendations into shard files, one per worker, and merges them back.
+ * Shard i holds the i-th contiguous run of the users, so concatenating the shards in
+ * order gives exactly the file one {@link RecommendationWriter} would have written.
+ * Consumers that can read the shards directly may skip the merge.
+ *
+ * <p>Run as a program to merge shards: {@code RecommendationShards <output> <shard>...}
+ */
+public final class RecommendationShards {
+
+    private RecommendationShards() {
+    }
+
+    /**
+     * Reports a user whose recommendations could not be written; the shard goes on with
+     * the next user. Called from the shard's worker thread.
+     */
+    @FunctionalInterface
+    public interface WriteErrorHandler {
+        void failed(User user, IOException e);
+    }
+
+    /**
+     * Returns the paths of the shards of an output file: "<outputPath>.shard-000" and so on.
+     */
+    public static List<String> shardPaths(String outputPath, int shardCount) {
+        List<String> paths = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            paths.add(String.format("%s.shard-%03d", outputPath, shard));
+        }
+        return paths;
+    }
+
+    /**
+     * Computes and writes the recommendations of the users into the shard files, each
+     * shard on its own task of the executor with its own writer. Existing shard files
+     * are replaced. Returns the number of users written.
+     */
+    public static int write(RecommendationSystem recSys, List<User> users, List<String> shardPaths,
+                            ExecutorService executor, WriteErrorHandler errors) throws IOException {
+        int shardCount = shardPaths.size();
+        List<Callable<Integer>> shards = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            List<User> run = users.subList((int) ((long) users.size() * shard / shardCount),
+                    (int) ((long) users.size() * (shard + 1) / shardCount));
+            String path = shardPaths.get(shard);
+            shards.add(() -> {
+                int written = 0;
+                try (RecommendationWriter writer = new RecommendationWriter(path, false)) {
+                    for (User user : run) {
+                        try {
+                            recSys.writeRecommendations(writer, user, recSys.getRecommendations(user).getMovies());
+                            written++;
+                        } catch (IOException e) {
+                            errors.failed(user, e);
+                        }
+                    }
+                }
+                return written;
+            });
+        }
+
+        int written = 0;
+        try {
+            for (Future<Integer> done : executor.invokeAll(shards)) {
+                written += done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing shards", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Could not write shards", cause);
+        }
+        return written;
+    }
+
+    /**
+     * Concatenates the shards, in order, into the output file with channel-to-channel
+     * copies, appending to it or replacing it.
+     */
+    public static void merge(List<String> shardPaths, String outputPath, boolean append) throws IOException {
+        StandardOpenOption mode = append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+        try (FileChannel out = FileChannel.open(Paths.get(outputPath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, mode)) {
+            for (String shardPath : shardPaths) {
+                try (FileChannel in = FileChannel.open(Paths.get(shardPath), StandardOpenOption.READ)) {
+                    long size = in.size();
+                    for (long position = 0; position < size; ) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: RecommendationShards <output file> <shard file>...");
+            return;
+        }
+        List<String> shardPaths = Arrays.asList(args).subList(1, args.length);
+        try {
+            merge(shardPaths, args[0], false);
+            System.out.println("Merged " + shardPaths.size() + " shards into " + args[0]);
+        } catch (IOException e) {
+            System.out.println("❌ Error merging shards: " + e.getMessage());
+        }
+    }
+}
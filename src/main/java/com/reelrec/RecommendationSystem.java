@@ -2,77 +2,131 @@ package com.reelrec;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 public class RecommendationSystem {
     
-    private TreeMap<Movie, List<String>> movieCategories;
-    private TreeMap<String, List<Movie>> categoryMovies;
-    private Map<String, Movie> movieIdMap;
+    // Queries read the catalog snapshot once; loads build a new one and publish it
+    private volatile CatalogIndex catalog; // Movies by ordinal and by ID, and genre postings
     private List<User> users;
-    private List<String> userCategories; // To store user categories for debugging
+    // Users by ID, published like the catalog so lookups take no lock, see indexUsers
+    private volatile UserIndex usersById = new UserIndex();
+    private volatile List<String> userCategories; // To store user categories for debugging
+    private boolean mapFiles = true; // See setMapFiles
+    private static final long MIN_USERS_CHUNK_SIZE = 1 << 20; // Users files are split into chunks of at least 1MB
+
+    // Loaded and skipped records, and per-file and per-query times, see MetricsRegistry
+    private static final MetricsRegistry.Counter MOVIES_LOADED = MetricsRegistry.global().counter("load.moviesLoaded");
+    private static final MetricsRegistry.Counter MOVIES_SKIPPED = MetricsRegistry.global().counter("load.moviesSkipped");
+    private static final MetricsRegistry.Counter USERS_LOADED = MetricsRegistry.global().counter("load.usersLoaded");
+    private static final MetricsRegistry.Counter USERS_WITH_ERRORS = MetricsRegistry.global().counter("load.usersWithErrors");
+    private static final MetricsRegistry.Histogram MOVIES_TIME = MetricsRegistry.global().timer("load.movies");
+    private static final MetricsRegistry.Histogram USERS_TIME = MetricsRegistry.global().timer("load.users");
+    private static final MetricsRegistry.Histogram RECOMMEND_TIME = MetricsRegistry.global().timer("recommend");
+    private static final MetricsRegistry.Histogram SIMILAR_TIME = MetricsRegistry.global().timer("recommend.similar");
+    // Postings scanned per query, counting a movie once per genre it is listed under
+    private static final MetricsRegistry.Histogram CANDIDATES = MetricsRegistry.global().sizes("recommend.candidates");
  
     public RecommendationSystem() {
-        this.movieCategories = new TreeMap<>();
-        this.categoryMovies = new TreeMap<>();
-        this.movieIdMap = new HashMap<>();
+        this.catalog = new CatalogIndex.Builder().build();
         this.users = new ArrayList<>();
         this.userCategories = new ArrayList<>(); 
     }
     
     public RecommendationSystem(TreeMap<Movie, List<String>> movieCategories, 
                                TreeMap<String, List<Movie>> categoryMovies) {
-        this.movieCategories = movieCategories;
-        this.categoryMovies = categoryMovies;
-        this.movieIdMap = new HashMap<>();
+        this.catalog = CatalogIndex.of(movieCategories, categoryMovies);
         this.users = new ArrayList<>();
         this.userCategories = new ArrayList<>();
-        
-        // Populate movieIdMap for existing movies
-        for (Movie movie : movieCategories.keySet()) {
-            movieIdMap.put(movie.getID(), movie);
-        }
     }
     
+    /**
+     * Sets whether input files are read through a memory mapping, as they are by
+     * default. Files that may be rewritten while they are loaded, like the ones
+     * {@link RecommendationReloader} watches, must be read without it.
+     */
+    void setMapFiles(boolean mapFiles) {
+        this.mapFiles = mapFiles;
+    }
+
+    private MappedLineReader lines(String filePath, long start, long end) throws IOException {
+        return new MappedLineReader(filePath, start, end, mapFiles);
+    }
+
     public List<User> getUsers() {
         return users;
     }
     
     public Movie getMovieById(String id) {
-        return movieIdMap.get(id);
+        return catalog.movie(id);
     }
 
+    /**
+     * Returns the movies by ID of the current catalog, as a read-only map that later
+     * loads and updates do not change.
+     */
     public Map<String, Movie> getMovieIdMap() {
-        return movieIdMap;
+        return catalog.movieIds();
     }
     
     public List<Movie> getMoviesByCategory(String category) {
-        List<Movie> movies = categoryMovies.get(category);
-        
-        if (movies == null) {
-            return new ArrayList<>();
+        CatalogIndex catalog = this.catalog;
+        List<Movie> movies = new ArrayList<>();
+        int genre = catalog.genreId(category);
+        if (genre < 0) {
+            return movies;
         }
         
         // Return all movies in the category
-        return new ArrayList<>(movies);
+        int[] posting = catalog.postings[genre];
+        for (int i = 0; i < catalog.postingSizes[genre]; i++) {
+            movies.add(catalog.movies[posting[i]]);
+        }
+        return movies;
     } 
 
     /**
      * Loads movies from a text file.
      * Format: "Movie Title, MovieID" followed by categories on next line
      */
-    public void loadMoviesFromFile(String filePath, ArrayList<Integer> invalidLines) throws IOException {
+    public synchronized void loadMoviesFromFile(String filePath, ArrayList<Integer> invalidLines) throws IOException {
+        loadMoviesFromFile(filePath, toBitSet(invalidLines));
+    }
+
+    /**
+     * Loads movies from a text file, skipping the lines set in {@code invalidLines}.
+     */
+    public synchronized void loadMoviesFromFile(String filePath, BitSet invalidLines) throws IOException {
+        long start = System.nanoTime();
+        FlightEvents.CatalogLoad event = new FlightEvents.CatalogLoad();
+        event.begin();
         Validator validator = new Validator();  // Use a Validator instance
+        CatalogIndex.Builder builder = new CatalogIndex.Builder(catalog);
+        TextKeyMap<String> genreNames = new TextKeyMap<>();
+        int loaded = 0;
+        int skipped = 0;
         try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
             int lineNumber = 0;
             String movieInfoLine;
             while ((movieInfoLine = reader.readLine()) != null) {
                 lineNumber++;
                 movieInfoLine = movieInfoLine.trim();
-                 if (movieInfoLine.isEmpty() || invalidLines.contains(lineNumber))
+                 if (movieInfoLine.isEmpty())
+                     continue;
+                 if (invalidLines.get(lineNumber)) {
+                     skipped++;
                      continue;
+                 }
                 
                 if (!movieInfoLine.contains(",")) {
                     // Bad formatting – you might log an error and then skip the record
+                    skipped++;
                     continue;
                 }
                 String[] parts = movieInfoLine.split(",", 2);
@@ -89,202 +143,978 @@ public class RecommendationSystem {
                     // (Optional) Log the error message for this movie.
                     // Do not add an invalid movie to the maps.
                     System.out.println("Skipping movie record due to error: " + error + " at line " + lineNumber);
+                    skipped++;
                     // Also, skip reading the genres line.
                     reader.readLine();  // consume the genre line
                     lineNumber++;
                     continue;
                 }
                 
-                // Create Movie with proper constructor ordering.
-                Movie currentMovie = new Movie(id, title);
-                movieIdMap.put(id, currentMovie);
-                movieCategories.put(currentMovie, new ArrayList<>());
-                
                 // Immediately read and process the genres line.
                 String genresLine = reader.readLine();
                 lineNumber++;
-                if (genresLine != null && !genresLine.trim().isEmpty() && !invalidLines.contains(lineNumber)) {
-                    String[] genres = genresLine.split(",");
-                    for (String genre : genres) {
-                        genre = genre.trim();
-                        String genreError = validator.checkMovieGenre(genre);
-                        if (!genreError.equals("")) {
-                            System.out.println("Skipping genre for movie " + id + ": " + genreError + " at line " + lineNumber);
-                            continue;  // Skip this genre if it’s invalid.
-                        }
-                        movieCategories.get(currentMovie).add(genre);
-                        if (!categoryMovies.containsKey(genre)) {
-                            categoryMovies.put(genre, new ArrayList<>());
-                        }
-                        categoryMovies.get(genre).add(currentMovie);
-                    }
+                if (genresLine != null && invalidLines.get(lineNumber)) {
+                    genresLine = null;
                 }
+                addMovie(builder, validator, genreNames, id, title, genresLine, lineNumber);
+                loaded++;
             }
         }
+        catalog = builder.build();
+        loadedMovies(event, filePath, start, loaded, skipped);
     }
-    
+
     /**
-     * Loads user data from a text file.
-     * Format: "Username, UserID" followed by watched movie IDs on next line
+     * Validates and loads the movies file in a single read. Each record is checked
+     * with the validator's rules and added from the same lines, giving the same errors
+     * and catalog as parseAndValidateMovies followed by loadMoviesFromFile with the
+     * lines it reported. A missing genres line at the end of the file counts as empty.
+     * Returns the validation errors.
      */
-    public void loadUsersFromFile(String filePath, ArrayList<Integer> invalidLines, Set<String> validMovieIds) throws IOException {
-        // Do not create a new Validator here – assume validation was already done in Main.
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String userInfoLine;
+    public synchronized List<ValidationError> loadAndValidateMoviesFromFile(String filePath, Validator validator) {
+        long start = System.nanoTime();
+        FlightEvents.CatalogLoad event = new FlightEvents.CatalogLoad();
+        event.begin();
+        List<ValidationError> errors = new ArrayList<>();
+        CatalogIndex.Builder builder = new CatalogIndex.Builder(catalog);
+        TextKeyMap<String> genreNames = new TextKeyMap<>();
+        int loaded = 0;
+        int skipped = 0;
+        try (MappedLineReader reader = lines(filePath, 0, Long.MAX_VALUE)) {
             int lineNumber = 0;
-            
-            while ((userInfoLine = reader.readLine()) != null) {
+            CharSequence movieInfoLine;
+            while ((movieInfoLine = reader.readLine()) != null) {
                 lineNumber++;
-                userInfoLine = userInfoLine.trim();
-                // Skip empty lines or lines flagged as invalid by the validator
-                if (userInfoLine.isEmpty() || invalidLines.contains(lineNumber))
-                    continue;
-                
-                String[] parts = userInfoLine.split(",", 2);
-                User currentUser;
-                if (parts.length != 2) {
-                    // Create a dummy user with an error message for a formatting error
-                    currentUser = new User("Unknown", "Unknown");
-                    currentUser.setErrorMessage("ERROR: User Formatting is wrong at line " + lineNumber);
-                    users.add(currentUser);
-                    // Consume the next line, which should be the watch list, and increment line number.
-                    reader.readLine();
-                    lineNumber++;
+                CharSequence genresLine = reader.readLine();
+                int invalid = validator.validateMovieRecord(filePath, movieInfoLine, genresLine == null ? "" : genresLine,
+                        lineNumber, errors);
+                lineNumber++;
+                if ((invalid & Validator.FIRST_LINE_INVALID) != 0) {
+                    skipped++;
                     continue;
                 }
-                String name = parts[0].trim();
-                String id = parts[1].trim();
-                currentUser = new User(name, id);
-                
-                // Read the next line for the watch list
-                String moviesLine = reader.readLine();
-                lineNumber++;
-                if (moviesLine == null || moviesLine.trim().isEmpty() || invalidLines.contains(lineNumber)) {
-                    currentUser.setErrorMessage("ERROR: User has no movies at line " + lineNumber);
-                } else {
-                    String[] movieIds = moviesLine.split(",");
-                    boolean hasValidMovies = false;
-                    boolean hasInvalidMovies = false;
-                    String lastInvalidMovieId = "";
-                    int lastInvalidLineNumber = 0;
-                    
-                    for (String movieId : movieIds) {
-                        movieId = movieId.trim();
-                        if (!validMovieIds.contains(movieId)) {
-                            hasInvalidMovies = true;
-                            lastInvalidMovieId = movieId;
-                            lastInvalidLineNumber = lineNumber;
-                            // Don't break here, continue processing other movie IDs
-                        } else {
-                            currentUser.addToWatchList(movieIdMap.get(movieId));
-                            hasValidMovies = true;
-                        }
-                    }
-                    
-                    // Set error message only if there were invalid movies and record the last one found
-                    if (hasInvalidMovies) {
-                        currentUser.setErrorMessage("ERROR: Movie Id \"" + lastInvalidMovieId + "\" at line " + lastInvalidLineNumber + " is not in the movies file");
-                    }
-                    
-                    // If no valid movies were found, clear the watchlist to ensure no recommendations
-                    if (!hasValidMovies && hasInvalidMovies) {
-                        currentUser.clearWatchList();
-                    }
+                // Title and ID as split(",", 2) of the trimmed line gives them
+                int from = LineFields.trimStart(movieInfoLine, 0, movieInfoLine.length());
+                int to = LineFields.trimEnd(movieInfoLine, from, movieInfoLine.length());
+                int comma = LineFields.indexOf(movieInfoLine, ',', from, to);
+                int titleFrom = LineFields.trimStart(movieInfoLine, from, comma);
+                int idFrom = LineFields.trimStart(movieInfoLine, comma + 1, to);
+                addMovie(builder, validator, genreNames,
+                        LineFields.text(movieInfoLine, idFrom, LineFields.trimEnd(movieInfoLine, idFrom, to)),
+                        LineFields.text(movieInfoLine, titleFrom, LineFields.trimEnd(movieInfoLine, titleFrom, comma)),
+                        (invalid & Validator.SECOND_LINE_INVALID) == 0 ? genresLine : null, lineNumber);
+                loaded++;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            errors = new ArrayList<>();
+            errors.add(ValidationError.unreadable(filePath));
+            return errors;
+        }
+        catalog = builder.build();
+        loadedMovies(event, filePath, start, loaded, skipped);
+        return errors;
+    }
+
+    // Counts a finished movies file load, see MetricsRegistry and FlightEvents
+    private void loadedMovies(FlightEvents.CatalogLoad event, String filePath, long start, int loaded, int skipped) {
+        MOVIES_LOADED.add(loaded);
+        MOVIES_SKIPPED.add(skipped);
+        MOVIES_TIME.recordSince(start);
+        if (event.shouldCommit()) {
+            CatalogIndex catalog = this.catalog;
+            event.path = filePath;
+            event.movies = loaded;
+            event.skipped = skipped;
+            event.catalogSize = catalog.size();
+            event.genres = catalog.genreCount();
+            event.commit();
+        }
+    }
+
+    // Adds a movie with the genres on its genres line, or with none if the line is null.
+    // genreNames keeps one String per genre spelling, so genres are not copied per movie.
+    private void addMovie(CatalogIndex.Builder builder, Validator validator, TextKeyMap<String> genreNames,
+                          String id, String title, CharSequence genresLine, int lineNumber) {
+        // Create Movie with proper constructor ordering.
+        Movie currentMovie = new Movie(id, title);
+        int ordinal = builder.addMovie(currentMovie);
+        
+        if (genresLine == null) {
+            return;
+        }
+        int end = LineFields.fieldsEnd(genresLine);
+        if (LineFields.trimStart(genresLine, 0, genresLine.length()) == genresLine.length()) {
+            return; // Blank genres line
+        }
+        for (int start = 0; start < end; ) {
+            int next = LineFields.indexOf(genresLine, ',', start, end);
+            int fieldEnd = next < 0 ? end : next;
+            int from = LineFields.trimStart(genresLine, start, fieldEnd);
+            int to = LineFields.trimEnd(genresLine, from, fieldEnd);
+            start = fieldEnd + 1;
+            int slot = genreNames.find(genresLine, from, to);
+            String genre;
+            if (slot >= 0) {
+                genre = genreNames.valueAt(slot);
+            } else {
+                genre = LineFields.text(genresLine, from, to);
+                String genreError = validator.checkMovieGenre(genre);
+                if (!genreError.equals("")) {
+                    System.out.println("Skipping genre for movie " + id + ": " + genreError + " at line " + lineNumber);
+                    continue;  // Skip this genre if it’s invalid.
                 }
-                // Always add the user record—even if it has an error message.
-                users.add(currentUser);
+                genreNames.put(genre, genre); // Only valid genres are remembered
             }
+            builder.addGenre(ordinal, genre);
         }
     }
     
-    
     /**
-     * Writes recommendations for a user to a file.
-     * Format: Username, UserID followed by recommended movie titles on the next line
+     * Loads user data from a text file.
+     * Format: "Username, UserID" followed by watched movie IDs on next line
      */
-    public void writeRecommendationsToFile(User user, String outputPath) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputPath, true))) {
-            // Write user info
-            writer.write(user.getName() + ", " + user.getId());
-            writer.newLine();
-            
-            // If the user has an error message, output that first
+    public synchronized void loadUsersFromFile(String filePath, ArrayList<Integer> invalidLines, Set<String> validMovieIds) throws IOException {
+        loadUsersFromFile(filePath, toBitSet(invalidLines), validMovieIds);
+    }
+
+    /**
+     * Loads user data from a text file, skipping the lines set in {@code invalidLines}.
+     * Large files are parsed in parallel on the common pool.
+     */
+    public synchronized void loadUsersFromFile(String filePath, BitSet invalidLines, Set<String> validMovieIds) throws IOException {
+        loadUsersFromFile(filePath, invalidLines, validMovieIds, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Loads user data from a text file, parsing a large file in chunks on the given
+     * executor. The users are added in file order and errors keep their line numbers,
+     * as if the file had been read line by line.
+     */
+    public synchronized void loadUsersFromFile(String filePath, BitSet invalidLines, Set<String> validMovieIds,
+                                               ExecutorService executor) throws IOException {
+        int processors = Runtime.getRuntime().availableProcessors();
+        long size = new File(filePath).length();
+        // A single processor gains nothing from the extra line counting pass
+        int chunkCount = processors == 1 ? 1 : (int) Math.min(processors * 4L, size / MIN_USERS_CHUNK_SIZE);
+        long start = System.nanoTime();
+        FlightEvents.UserLoad event = new FlightEvents.UserLoad();
+        event.begin();
+        int loaded = users.size();
+        loadUsersInChunks(filePath, invalidLines, validMovieIds, executor, Math.max(1, chunkCount));
+        loadedUsers(event, filePath, start, users.subList(loaded, users.size()));
+    }
+
+    // Counts a finished users file load, see MetricsRegistry and FlightEvents
+    private static void loadedUsers(FlightEvents.UserLoad event, String filePath, long start, List<User> loaded) {
+        int withErrors = 0;
+        for (User user : loaded) {
             if (user.getErrorMessage() != null) {
-                writer.write(user.getErrorMessage());
-                writer.newLine();
+                withErrors++;
             }
-            
-            // Generate recommendations regardless of errors
-            List<Movie> recommendations = recommendMoviesForUser(user);
-            if (!recommendations.isEmpty()) {
-                StringJoiner joiner = new StringJoiner(", ");
-                for (Movie movie : recommendations) {
-                    joiner.add(movie.getName());
+        }
+        USERS_LOADED.add(loaded.size());
+        USERS_WITH_ERRORS.add(withErrors);
+        USERS_TIME.recordSince(start);
+        if (event.shouldCommit()) {
+            event.path = filePath;
+            event.users = loaded.size();
+            event.usersWithErrors = withErrors;
+            event.commit();
+        }
+    }
+
+    /**
+     * Loads the users file as chunkCount byte ranges. A first pass counts the lines of
+     * every range, so each range knows its first line number and can be moved to start
+     * on an odd line, where a "Name, ID" line starts a record in a well-formed file.
+     * The ranges are then parsed in parallel, assuming they start between records. If
+     * a range turns out to start inside a record (blank or skipped lines shifted the
+     * records), it is parsed again after the range before it, on the calling thread.
+     */
+    void loadUsersInChunks(String filePath, BitSet invalidLines, Set<String> validMovieIds,
+                           ExecutorService executor, int chunkCount) throws IOException {
+        TextKeyMap<Movie> validMovies = validMovies(validMovieIds);
+        if (chunkCount == 1) {
+            UserRecordParser parser = new UserRecordParser(invalidLines, validMovies);
+            parser.finish(parseLines(parser, filePath, 0, Long.MAX_VALUE, 1));
+            users.addAll(parser.loaded);
+            indexUsers();
+            return;
+        }
+
+        long[] bounds = MappedLineReader.split(filePath, chunkCount);
+        List<Callable<long[]>> counting = new ArrayList<>();
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            long start = bounds[chunk];
+            long end = bounds[chunk + 1];
+            counting.add(() -> {
+                // The number of lines and where the second one starts
+                long[] count = {0, end};
+                try (MappedLineReader reader = lines(filePath, start, end)) {
+                    while (reader.readLine() != null) {
+                        if (++count[0] == 1) {
+                            count[1] = reader.position();
+                        }
+                    }
                 }
-                writer.write(joiner.toString());
+                return count;
+            });
+        }
+        List<long[]> counts = invokeAll(executor, counting);
+
+        int[] firstLines = new int[chunkCount];
+        int lineNumber = 1;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            long[] count = counts.get(chunk);
+            firstLines[chunk] = lineNumber;
+            if (lineNumber % 2 == 0 && count[0] > 0) {
+                // Hand the watch list line to the previous range
+                bounds[chunk] = count[1];
+                firstLines[chunk]++;
+            }
+            lineNumber += (int) count[0];
+        }
+        int lastLineNumber = lineNumber - 1;
+
+        List<Callable<UserRecordParser>> parsing = new ArrayList<>();
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            long start = bounds[chunk];
+            long end = bounds[chunk + 1];
+            int firstLine = firstLines[chunk];
+            parsing.add(() -> {
+                UserRecordParser parser = new UserRecordParser(invalidLines, validMovies);
+                parseLines(parser, filePath, start, end, firstLine);
+                return parser;
+            });
+        }
+        List<UserRecordParser> parsers = invokeAll(executor, parsing);
+
+        List<User> loaded = new ArrayList<>();
+        UserRecordParser current = parsers.get(0);
+        for (int chunk = 1; chunk < chunkCount; chunk++) {
+            if (current.betweenRecords()) {
+                loaded.addAll(current.loaded);
+                current = parsers.get(chunk);
             } else {
-                writer.write("No recommendations");
+                parseLines(current, filePath, bounds[chunk], bounds[chunk + 1], firstLines[chunk]);
+            }
+        }
+        current.finish(lastLineNumber);
+        loaded.addAll(current.loaded);
+        users.addAll(loaded);
+        indexUsers();
+    }
+
+    // Feeds the lines of a byte range to the parser and returns the last line number
+    private int parseLines(UserRecordParser parser, String filePath, long start, long end,
+                                  int firstLine) throws IOException {
+        int lineNumber = firstLine - 1;
+        try (MappedLineReader reader = lines(filePath, start, end)) {
+            CharSequence line;
+            while ((line = reader.readLine()) != null) {
+                parser.accept(line, ++lineNumber);
+            }
+        }
+        return lineNumber;
+    }
+
+    private static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> done : executor.invokeAll(tasks)) {
+                results.add(done.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading users");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Could not load users", cause);
+        }
+        return results;
+    }
+
+    // Valid movie IDs and their movies, for looking up watch list entries in place
+    private TextKeyMap<Movie> validMovies(Set<String> validMovieIds) {
+        CatalogIndex catalog = this.catalog;
+        TextKeyMap<Movie> validMovies = new TextKeyMap<>();
+        for (String movieId : validMovieIds) {
+            validMovies.put(movieId, catalog.movie(movieId));
+        }
+        return validMovies;
+    }
+
+    /**
+     * Reads the users file like {@link #loadUsersFromFile(String, BitSet, Set)}, but hands
+     * each user to the action, in file order, instead of adding it to {@link #getUsers()}.
+     * Only the record being read is kept, so files larger than the heap can be streamed.
+     */
+    public void forEachUserInFile(String filePath, BitSet invalidLines, Set<String> validMovieIds,
+                                  Consumer<User> action) throws IOException {
+        UserRecordParser parser = new UserRecordParser(invalidLines, validMovies(validMovieIds), user -> {
+            USERS_LOADED.increment();
+            if (user.getErrorMessage() != null) {
+                USERS_WITH_ERRORS.increment();
+            }
+            action.accept(user);
+        });
+        parser.finish(parseLines(parser, filePath, 0, Long.MAX_VALUE, 1));
+    }
+
+    /**
+     * Validates and loads the users file in a single read, giving the same errors and
+     * users as parseAndValidateUsers followed by loadUsersFromFile with the validator's
+     * valid movie IDs. A missing watch list line at the end of the file counts as empty.
+     * Returns the validation errors.
+     */
+    public synchronized List<ValidationError> loadAndValidateUsersFromFile(String filePath, Validator validator) {
+        long start = System.nanoTime();
+        FlightEvents.UserLoad event = new FlightEvents.UserLoad();
+        event.begin();
+        List<ValidationError> errors = new ArrayList<>();
+        UserRecordParser parser = new UserRecordParser(new BitSet(), validMovies(validator.getValidMovieIds()));
+        try (MappedLineReader reader = lines(filePath, 0, Long.MAX_VALUE)) {
+            CharSequence line;
+            CharSequence userInfoLine = null;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                parser.accept(line, lineNumber);
+                // The validator always reads records as line pairs
+                if (userInfoLine == null) {
+                    userInfoLine = line;
+                } else {
+                    validator.validateUserRecord(filePath, userInfoLine, line, lineNumber - 1, errors);
+                    userInfoLine = null;
+                }
+            }
+            if (userInfoLine != null) {
+                validator.validateUserRecord(filePath, userInfoLine, "", lineNumber, errors);
+            }
+            parser.finish(lineNumber);
+        } catch (IOException e) {
+            e.printStackTrace();
+            errors = new ArrayList<>();
+            errors.add(ValidationError.unreadable(filePath));
+            return errors;
+        }
+        users.addAll(parser.loaded);
+        indexUsers();
+        loadedUsers(event, filePath, start, parser.loaded);
+        return errors;
+    }
+
+    /**
+     * Adds one movie with the same validation as a record of the movies file: the
+     * title and ID are checked as the record's first line and the genres, joined with
+     * commas, as its second, numbered as lines 1 and 2. Like loading, the movie is only
+     * added if its first line is valid, and without genres if its second line is not.
+     * Pass the validator the catalog was loaded with, so the ID is checked against the
+     * loaded movies. Only the postings of the movie's genres are copied.
+     * Returns the validation errors.
+     */
+    public synchronized List<ValidationError> addMovie(String title, String id, List<String> genres,
+                                                       Validator validator) {
+        List<ValidationError> errors = new ArrayList<>();
+        String genresLine = String.join(",", genres);
+        int invalid = validator.validateMovieRecord(null, title + "," + id, genresLine, 1, errors);
+        if ((invalid & Validator.FIRST_LINE_INVALID) != 0) {
+            return errors;
+        }
+        Movie movie = new Movie(id.trim(), title.trim());
+        List<String> listed = new ArrayList<>();
+        if ((invalid & Validator.SECOND_LINE_INVALID) == 0) {
+            int end = LineFields.fieldsEnd(genresLine);
+            for (int start = 0; start < end; ) {
+                int next = LineFields.indexOf(genresLine, ',', start, end);
+                int fieldEnd = next < 0 ? end : next;
+                int from = LineFields.trimStart(genresLine, start, fieldEnd);
+                listed.add(genresLine.substring(from, LineFields.trimEnd(genresLine, from, fieldEnd)));
+                start = fieldEnd + 1;
+            }
+        }
+        catalog = catalog.withoutMovie(movie.getID()).withMovie(movie, listed);
+        return errors;
+    }
+
+    /**
+     * Removes the movie with the given ID from the catalog and from the validator's
+     * movie IDs, so its ID can be used again. Users who watched it keep it in their
+     * watch lists, but it no longer counts towards their recommendations. Returns
+     * false if there is no such movie.
+     */
+    public synchronized boolean removeMovie(String id, Validator validator) {
+        if (catalog.movie(id) == null) {
+            return false;
+        }
+        catalog = catalog.withoutMovie(id);
+        validator.forgetMovieId(id);
+        return true;
+    }
+
+    /**
+     * Adds one user with the same validation and parsing as a record of the users file,
+     * numbered as lines 1 and 2: the user gets the error messages loading would give,
+     * and an invalid user ID clears the watch list. Pass the validator the users were
+     * loaded with, so the ID is checked against theirs. Returns the validation errors.
+     */
+    public synchronized List<ValidationError> addUser(String name, String id, List<String> watchedMovieIds,
+                                                      Validator validator) {
+        List<ValidationError> errors = new ArrayList<>();
+        String userLine = name + "," + id;
+        String moviesLine = String.join(",", watchedMovieIds);
+        validator.validateUserRecord(null, userLine, moviesLine, 1, errors);
+
+        // Only the watched movies are looked up, instead of all valid movies
+        Set<String> validMovieIds = validator.getValidMovieIds();
+        TextKeyMap<Movie> watchedMovies = new TextKeyMap<>();
+        for (String movieId : watchedMovieIds) {
+            String trimmed = movieId.trim();
+            if (validMovieIds.contains(trimmed)) {
+                watchedMovies.put(trimmed, catalog.movie(trimmed));
+            }
+        }
+        List<User> added = new ArrayList<>();
+        UserRecordParser parser = new UserRecordParser(new BitSet(), watchedMovies, added::add);
+        parser.accept(userLine, 1);
+        parser.accept(moviesLine, 2);
+        parser.finish(2);
+        for (User user : added) {
+            for (ValidationError error : errors) {
+                if (error.isUserIdError()) {
+                    user.setErrorMessage(error.message());
+                    user.clearWatchList();
+                }
+            }
+            users.add(user);
+        }
+        indexUsers();
+        return errors;
+    }
+
+    /**
+     * Adds a movie to the watch list of the user with the given ID. The movie ID is
+     * checked like one on the watch list line of a users file (line 2), and an unknown
+     * one is not recorded. The watch list is replaced by an extended copy, so queries
+     * already iterating it are not disturbed. Returns the validation errors.
+     *
+     * @throws IllegalArgumentException if there is no user with the ID
+     */
+    public synchronized List<ValidationError> recordWatch(String userId, String movieId, Validator validator) {
+        User user = usersById.get(userId);
+        if (user == null) {
+            throw new IllegalArgumentException("No user with ID " + userId);
+        }
+        List<ValidationError> errors = new ArrayList<>();
+        String trimmed = movieId.trim();
+        if (!validator.validateWatchedMovie(null, trimmed, 0, trimmed.length(), 2, errors)) {
+            return errors;
+        }
+        Movie movie = catalog.movie(trimmed);
+        if (movie == null) { // Known to a validator the catalog was not loaded with
+            errors.add(new ValidationError(ValidationError.Code.UNKNOWN_MOVIE, null, 2, trimmed));
+            return errors;
+        }
+        List<Movie> watchList = new ArrayList<>(user.getWatchList());
+        watchList.add(movie);
+        user.setWatchList(watchList);
+        return errors;
+    }
+
+    /**
+     * Returns the first loaded user with the given ID, or null if there is none. Only
+     * users loaded or added by this class are found, not ones added to {@link #getUsers()}.
+     */
+    public User getUserById(String userId) {
+        return usersById.get(userId);
+    }
+
+    // Publishes an index with the users added to the list since the last one
+    private void indexUsers() {
+        usersById = usersById.with(users);
+    }
+
+    /**
+     * The first user of each ID among the first {@code count} users of the list. The
+     * indexes built from one another share an append-only map, and each one ignores the
+     * entries of users after its own, like {@link CatalogIndex} does with later movies.
+     */
+    private static final class UserIndex {
+        private record Entry(User user, int position) {
+        }
+
+        private final Map<String, Entry> firstById;
+        private final int count;
+
+        UserIndex() {
+            this(new ConcurrentHashMap<>(), 0);
+        }
+
+        private UserIndex(Map<String, Entry> firstById, int count) {
+            this.firstById = firstById;
+            this.count = count;
+        }
+
+        User get(String userId) {
+            Entry entry = userId == null ? null : firstById.get(userId);
+            return entry == null || entry.position() >= count ? null : entry.user();
+        }
+
+        // Returns the index of the list, which must start with this index's users
+        // unless it is shorter, e.g. after being cleared
+        UserIndex with(List<User> users) {
+            if (users.size() < count) {
+                return new UserIndex().with(users);
+            }
+            for (int position = count; position < users.size(); position++) {
+                User user = users.get(position);
+                if (user.getId() != null) {
+                    firstById.putIfAbsent(user.getId(), new Entry(user, position));
+                }
+            }
+            return new UserIndex(firstById, users.size());
+        }
+    }
+
+    /**
+     * Saves the loaded movies and users to a binary snapshot, tagged with the
+     * {@link CatalogSnapshot#sourceHash} of the files they were loaded from.
+     */
+    public synchronized void saveSnapshot(String snapshotPath, byte[] sourceHash) throws IOException {
+        saveSnapshot(snapshotPath, sourceHash, CatalogSnapshot.Warnings.NONE);
+    }
+
+    // Saves the validation warnings of the load along, see CatalogSnapshot.warmStart
+    synchronized void saveSnapshot(String snapshotPath, byte[] sourceHash, CatalogSnapshot.Warnings warnings)
+            throws IOException {
+        new CatalogSnapshot(catalog, users, warnings).write(snapshotPath, sourceHash);
+    }
+
+    /**
+     * Replaces the loaded movies and users with those of a snapshot saved from sources
+     * with the same hash. Returns false, leaving the system unchanged, if the snapshot
+     * is missing, stale or from another format version.
+     */
+    public synchronized boolean loadSnapshot(String snapshotPath, byte[] sourceHash) throws IOException {
+        return restoreSnapshot(snapshotPath, sourceHash) != null;
+    }
+
+    // Like loadSnapshot, returning the snapshot's validation warnings, or null if it was not loaded
+    synchronized CatalogSnapshot.Warnings restoreSnapshot(String snapshotPath, byte[] sourceHash) throws IOException {
+        CatalogSnapshot snapshot = CatalogSnapshot.read(snapshotPath, sourceHash);
+        if (snapshot == null) {
+            return null;
+        }
+        catalog = snapshot.catalog;
+        users.clear();
+        users.addAll(snapshot.users);
+        usersById = new UserIndex().with(users);
+        return snapshot.warnings;
+    }
+
+    private static BitSet toBitSet(List<Integer> lines) {
+        BitSet set = new BitSet();
+        for (int line : lines) {
+            if (line >= 0) {
+                set.set(line);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Turns the lines of a users file into users, one line at a time. Blank lines and
+     * lines flagged as invalid are skipped between records. Lines are split in place,
+     * and only the names and IDs of loaded users are copied out of them.
+     */
+    private static class UserRecordParser {
+        private final BitSet invalidLines;
+        private final TextKeyMap<Movie> validMovies; // Valid movie IDs and their movies
+        private final List<User> loaded = new ArrayList<>(); // Unless the users go to a sink
+        private final Consumer<User> sink;
+        private User currentUser;          // Waiting for its watch list line
+        private boolean skipWatchList;     // The record had no "Name, ID" line
+
+        UserRecordParser(BitSet invalidLines, TextKeyMap<Movie> validMovies) {
+            this(invalidLines, validMovies, null);
+        }
+
+        UserRecordParser(BitSet invalidLines, TextKeyMap<Movie> validMovies, Consumer<User> sink) {
+            this.invalidLines = invalidLines;
+            this.validMovies = validMovies;
+            this.sink = sink != null ? sink : loaded::add;
+        }
+
+        // Whether the next line would start a new record
+        boolean betweenRecords() {
+            return currentUser == null && !skipWatchList;
+        }
+
+        void accept(CharSequence line, int lineNumber) {
+            if (skipWatchList) {
+                skipWatchList = false;
+                return;
+            }
+            if (currentUser != null) {
+                readWatchList(line, lineNumber);
+                return;
             }
+            int from = LineFields.trimStart(line, 0, line.length());
+            int to = LineFields.trimEnd(line, from, line.length());
+            // Skip empty lines or lines flagged as invalid by the validator
+            if (from == to || invalidLines.get(lineNumber))
+                return;
             
-            // Separate records with blank lines.
-            writer.newLine();
-            writer.newLine();
+            int comma = LineFields.indexOf(line, ',', from, to);
+            if (comma < 0) {
+                // Create a dummy user with an error message for a formatting error
+                User dummyUser = new User("Unknown", "Unknown");
+                dummyUser.setErrorMessage("ERROR: User Formatting is wrong at line " + lineNumber);
+                sink.accept(dummyUser);
+                // Consume the next line, which should be the watch list.
+                skipWatchList = true;
+                return;
+            }
+            int nameFrom = LineFields.trimStart(line, from, comma);
+            int idFrom = LineFields.trimStart(line, comma + 1, to);
+            String name = LineFields.text(line, nameFrom, LineFields.trimEnd(line, nameFrom, comma));
+            String id = LineFields.text(line, idFrom, LineFields.trimEnd(line, idFrom, to));
+            currentUser = new User(name, id);
+        }
+
+        // Called after the last line, in case the file ends before a watch list line
+        void finish(int lastLineNumber) {
+            if (currentUser != null) {
+                readWatchList(null, lastLineNumber + 1);
+            }
+        }
+
+        private void readWatchList(CharSequence moviesLine, int lineNumber) {
+            if (moviesLine == null || LineFields.trimStart(moviesLine, 0, moviesLine.length()) == moviesLine.length()
+                    || invalidLines.get(lineNumber)) {
+                currentUser.setErrorMessage("ERROR: User has no movies at line " + lineNumber);
+            } else {
+                boolean hasValidMovies = false;
+                boolean hasInvalidMovies = false;
+                int lastInvalidFrom = 0;
+                int lastInvalidTo = 0;
+                
+                int end = LineFields.fieldsEnd(moviesLine);
+                for (int start = 0; start < end; ) {
+                    int next = LineFields.indexOf(moviesLine, ',', start, end);
+                    int fieldEnd = next < 0 ? end : next;
+                    int from = LineFields.trimStart(moviesLine, start, fieldEnd);
+                    int to = LineFields.trimEnd(moviesLine, from, fieldEnd);
+                    start = fieldEnd + 1;
+                    int slot = validMovies.find(moviesLine, from, to);
+                    if (slot < 0) {
+                        hasInvalidMovies = true;
+                        lastInvalidFrom = from;
+                        lastInvalidTo = to;
+                        // Don't break here, continue processing other movie IDs
+                    } else {
+                        currentUser.addToWatchList(validMovies.valueAt(slot));
+                        hasValidMovies = true;
+                    }
+                }
+                
+                // Set error message only if there were invalid movies and record the last one found
+                if (hasInvalidMovies) {
+                    String lastInvalidMovieId = LineFields.text(moviesLine, lastInvalidFrom, lastInvalidTo);
+                    currentUser.setErrorMessage("ERROR: Movie Id \"" + lastInvalidMovieId + "\" at line " + lineNumber + " is not in the movies file");
+                }
+                
+                // If no valid movies were found, clear the watchlist to ensure no recommendations
+                if (!hasValidMovies && hasInvalidMovies) {
+                    currentUser.clearWatchList();
+                }
+            }
+            // Always add the user record—even if it has an error message.
+            User user = currentUser;
+            currentUser = null;
+            sink.accept(user);
         }
     }
+    /**
+     * Writes recommendations for a user to a file.
+     * Format: Username, UserID followed by recommended movie titles on the next line
+     */
+    public void writeRecommendationsToFile(User user, String outputPath) throws IOException {
+        // Generate recommendations regardless of errors
+        writeRecommendationsToFile(user, recommendMoviesForUser(user), outputPath);
+    }
+
+    /**
+     * Writes already computed recommendations for a user to a file, in the same format.
+     */
+    public void writeRecommendationsToFile(User user, List<Movie> recommendations, String outputPath) throws IOException {
+        try (RecommendationWriter writer = new RecommendationWriter(outputPath, true)) {
+            writer.write(user, recommendations);
+        }
+    }
+
+    /**
+     * Writes already computed recommendations for a user through a writer opened once per run.
+     */
+    public void writeRecommendations(RecommendationOutput writer, User user, List<Movie> recommendations) throws IOException {
+        writer.write(user, recommendations);
+    }
     
     
     /**
      * Recommends movies based on a user's watch history.
+     * Movies are grouped by the user's genres in the order they were first watched,
+     * and each movie is listed under the first of those genres it belongs to.
      */
     public List<Movie> recommendMoviesForUser(User user) {
-        List<Movie> recommendations = new ArrayList<>();
+        List<String> categories = new ArrayList<>();
+        List<Movie> recommendations = recommend(catalog, user, categories);
+        // The categories of a user without watch history are not reset
+        if (user != null && user.getWatchList() != null && !user.getWatchList().isEmpty()) {
+            userCategories = categories;
+        }
+        return recommendations;
+    }
+
+    /**
+     * Recommends movies like {@link #recommendMoviesForUser(User)} and returns them with
+     * the user's categories. Nothing is shared between calls, so any number of threads
+     * can query the same system.
+     */
+    public Recommendations getRecommendations(User user) {
+        List<String> categories = new ArrayList<>();
+        List<Movie> recommendations = recommend(catalog, user, categories);
+        return new Recommendations(recommendations, categories);
+    }
+
+    /**
+     * Recommends movies for every user in the collection using the common fork/join pool.
+     * The result lists are in the collection's iteration order.
+     */
+    public List<List<Movie>> recommendMoviesForUsers(Collection<User> users) {
+        return recommendMoviesForUsers(users, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Recommends movies for every user in the collection on the given executor, e.g. a
+     * sized {@link ForkJoinPool} or a virtual-thread-per-task executor. The users are
+     * split into chunks, and the result lists are in the collection's iteration order.
+     * Unlike {@link #recommendMoviesForUser(User)} this does not update {@link #getUserCategories()}.
+     */
+    public List<List<Movie>> recommendMoviesForUsers(Collection<User> users, ExecutorService executor) {
+        CatalogIndex catalog = this.catalog; // Every user sees the same snapshot
+        User[] batch = users.toArray(new User[0]);
+        List<List<Movie>> results = new ArrayList<>(Collections.nCopies(batch.length, null));
+        int chunkCount = Math.min(batch.length, Runtime.getRuntime().availableProcessors() * 4);
         
-        // Return empty list if user has no watch history
-        if (user == null || user.getWatchList() == null || user.getWatchList().isEmpty()) {
+        List<Callable<Void>> chunks = new ArrayList<>();
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int from = (int) ((long) batch.length * chunk / chunkCount);
+            int to = (int) ((long) batch.length * (chunk + 1) / chunkCount);
+            chunks.add(() -> {
+                for (int i = from; i < to; i++) {
+                    results.set(i, recommend(catalog, batch[i], null));
+                }
+                return null;
+            });
+        }
+        
+        try {
+            for (Future<Void> done : executor.invokeAll(chunks)) {
+                done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while recommending movies", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Could not recommend movies", cause);
+        }
+        return results;
+    }
+
+    // Computes the unranked recommendations, adding the user's genres to categories if given
+    private static List<Movie> recommend(CatalogIndex catalog, User user, List<String> categories) {
+        long start = System.nanoTime();
+        FlightEvents.Recommendation event = new FlightEvents.Recommendation();
+        event.begin();
+        List<Movie> recommendations = new ArrayList<>();
+        long candidates = 0;
+        try {
+            // Return empty list if user has no watch history
+            if (user == null || user.getWatchList() == null || user.getWatchList().isEmpty()) {
+                return recommendations;
+            }
+
+            // Return empty list if no valid categories found
+            WatchProfile profile = profile(catalog, user, categories);
+            if (profile.genreCount == 0) {
+                return recommendations;
+            }
+
+            collectByGenre(catalog, profile.genres, profile.genreCount, profile.watched, profile.watchedCount, recommendations);
+            candidates = candidates(catalog, profile.genres, profile.genreCount);
+            CANDIDATES.record(candidates);
+            return recommendations;
+        } finally {
+            RECOMMEND_TIME.recordSince(start);
+            commit(event, catalog, user, candidates, recommendations.size());
+        }
+    }
+
+    // Records a slow recommendation with what it worked on, see FlightEvents
+    private static void commit(FlightEvents.Recommendation event, CatalogIndex catalog, User user,
+                               long candidates, int results) {
+        if (event.shouldCommit()) {
+            event.userId = user == null ? null : user.getId();
+            event.watched = user == null || user.getWatchList() == null ? 0 : user.getWatchList().size();
+            event.candidates = candidates;
+            event.results = results;
+            event.catalogSize = catalog.size();
+            event.commit();
+        }
+    }
+
+    private static long candidates(CatalogIndex catalog, int[] genres, int genreCount) {
+        long candidates = 0;
+        for (int i = 0; i < genreCount; i++) {
+            candidates += catalog.postingSizes[genres[i]];
+        }
+        return candidates;
+    }
+
+    /**
+     * Recommends at most k movies, ranked by how many genres they share with the
+     * user's watch history. Ties keep the order of {@link #recommendMoviesForUser(User)}.
+     */
+    public List<Movie> recommendMoviesForUser(User user, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k cannot be negative: " + k);
+        }
+        List<Movie> recommendations = new ArrayList<>();
+        if (k == 0 || user == null || user.getWatchList() == null || user.getWatchList().isEmpty()) {
             return recommendations;
         }
         
-        // Find categories the user has watched
-        userCategories.clear();
-        for (Movie movie : user.getWatchList()) {
-            // Skip null movies or movies not in movieCategories map
-            if (movie == null || !movieCategories.containsKey(movie)) {
-                continue;
+        long start = System.nanoTime();
+        FlightEvents.Recommendation event = new FlightEvents.Recommendation();
+        event.begin();
+        CatalogIndex catalog = this.catalog;
+        List<String> categories = new ArrayList<>();
+        WatchProfile profile = profile(catalog, user, categories);
+        userCategories = categories;
+        TopKHeap best = new TopKHeap(Math.min(k, catalog.size()));
+        int words = catalog.maskWords;
+        long[] earlierGenres = new long[words];
+        int laterGenres = profile.genreCount; // Profile genres not in earlierGenres
+        long candidates = 0; // Only the genres scanned before the cutoff
+        for (int i = 0; i < profile.genreCount; i++) {
+            // Movies listed under this genre share none of the earlier ones, which caps their score
+            int genre = profile.genres[i];
+            if (laterGenres <= best.minScore()) {
+                break;
             }
-            
-            List<String> genresForMovie = movieCategories.get(movie);
-            if (genresForMovie != null) {
-                for (String category : genresForMovie) {
-                    if (!userCategories.contains(category)) {
-                        userCategories.add(category);
-                    }
+            int[] posting = catalog.postings[genre];
+            candidates += catalog.postingSizes[genre];
+            for (int p = 0, postingSize = catalog.postingSizes[genre]; p < postingSize; p++) {
+                int ordinal = posting[p];
+                if (anyGenre(catalog.genreMasks, ordinal * words, earlierGenres)
+                        || Arrays.binarySearch(profile.watched, 0, profile.watchedCount, ordinal) >= 0) {
+                    continue;
+                }
+                int score = countGenres(catalog.genreMasks, ordinal * words, profile.genreMask);
+                if (score > best.minScore()) {
+                    best.offer(ordinal, score);
                 }
             }
+            earlierGenres[genre >>> 6] |= 1L << genre;
+            laterGenres--;
         }
         
-        // Return empty list if no valid categories found
-        if (userCategories.isEmpty()) {
-            return recommendations;
+        for (int ordinal : best.drain()) {
+            recommendations.add(catalog.movies[ordinal]);
         }
-        
-        // Create a list of movies the user has already watched
+        CANDIDATES.record(candidates);
+        RECOMMEND_TIME.recordSince(start);
+        commit(event, catalog, user, candidates, recommendations.size());
+        return recommendations;
+    }
+
+    // Genres (in first-watched order) and sorted watched ordinals of one user
+    private static final class WatchProfile {
+        final int[] genres;
+        int genreCount;
+        final long[] genreMask; // In the catalog's mask layout
+        final int[] watched;
+        int watchedCount;
+
+        WatchProfile(int maxGenres, int maskWords, int maxWatched) {
+            this.genres = new int[maxGenres];
+            this.genreMask = new long[maskWords];
+            this.watched = new int[maxWatched];
+        }
+    }
+
+    // Whether the mask starting at from shares a genre with genres
+    private static boolean anyGenre(long[] masks, int from, long[] genres) {
+        for (int w = 0; w < genres.length; w++) {
+            if ((masks[from + w] & genres[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // How many genres the mask starting at from shares with genres
+    private static int countGenres(long[] masks, int from, long[] genres) {
+        int count = 0;
+        for (int w = 0; w < genres.length; w++) {
+            count += Long.bitCount(masks[from + w] & genres[w]);
+        }
+        return count;
+    }
+
+    private static WatchProfile profile(CatalogIndex catalog, User user, List<String> categories) {
         List<Movie> watchedMovies = user.getWatchList();
+        WatchProfile profile = new WatchProfile(catalog.genreCount(), catalog.maskWords, watchedMovies.size());
         
-        // Find movies in those categories that the user hasn't watched
-        for (String category : userCategories) {
-            List<Movie> moviesInCategory = categoryMovies.get(category);
-            if (moviesInCategory != null) {
-                for (Movie movie : moviesInCategory) {
-                    if (!watchedMovies.contains(movie) && !recommendations.contains(movie)) {
-                        recommendations.add(movie);
+        // Find categories the user has watched, OR-ing them into one mask
+        for (Movie movie : watchedMovies) {
+            int ordinal = movie == null ? -1 : catalog.ordinalOf(movie);
+            if (ordinal < 0) {
+                continue;
+            }
+            profile.watched[profile.watchedCount++] = ordinal;
+            for (int genre : catalog.movieGenres[ordinal]) {
+                long bit = 1L << genre;
+                if ((profile.genreMask[genre >>> 6] & bit) == 0) {
+                    profile.genreMask[genre >>> 6] |= bit;
+                    profile.genres[profile.genreCount++] = genre;
+                    if (categories != null) {
+                        categories.add(catalog.genres[genre]);
                     }
                 }
             }
         }
-        
-        return recommendations;
+        Arrays.sort(profile.watched, 0, profile.watchedCount);
+        return profile;
     }
 
+    /**
+     * Returns the categories of the last user recommended through
+     * {@link #recommendMoviesForUser(User)}. With several threads querying, use
+     * {@link #getRecommendations(User)} instead, which returns them per call.
+     */
     public List<String> getUserCategories() {
         return new ArrayList<>(userCategories); // Return a copy to avoid external modification
     }
@@ -293,32 +1123,47 @@ public class RecommendationSystem {
      * Recommends similar movies to a given movie based on shared categories.
      */
     public List<Movie> recommendSimilarMovies(Movie movie) {
+        long start = System.nanoTime();
+        CatalogIndex catalog = this.catalog;
         List<Movie> similarMovies = new ArrayList<>();
         
         // Return empty list if movie doesn't exist
-        if (movie == null || !movieCategories.containsKey(movie)) {
-            return similarMovies;
-        }
-        
-        // Get categories of the given movie
-        List<String> categories = movieCategories.get(movie);
-        if (categories == null) {
+        int ordinal = movie == null ? -1 : catalog.ordinalOf(movie);
+        if (ordinal < 0) {
             return similarMovies;
         }
         
         // Find movies that share at least one category
-        for (String category : categories) {
-            List<Movie> moviesInCategory = categoryMovies.get(category);
-            if (moviesInCategory != null) {
-                for (Movie potentialSimilar : moviesInCategory) {
-                    // Skip the original movie and already added movies
-                    if (!potentialSimilar.equals(movie) && !similarMovies.contains(potentialSimilar)) {
-                        similarMovies.add(potentialSimilar);
-                    }
+        int[] categories = catalog.movieGenres[ordinal];
+        collectByGenre(catalog, categories, categories.length, new int[] {ordinal}, 1, similarMovies);
+        CANDIDATES.record(candidates(catalog, categories, categories.length));
+        SIMILAR_TIME.recordSince(start);
+        return similarMovies;
+    }
+
+    /**
+     * Appends the movies posted under each of the given genres, in order, skipping
+     * excluded ordinals (sorted) and movies already covered by an earlier genre.
+     */
+    private static void collectByGenre(CatalogIndex catalog, int[] genres, int genreCount,
+                                       int[] excluded, int excludedCount, List<Movie> out) {
+        int words = catalog.maskWords;
+        long[] earlierGenres = new long[words];
+        for (int i = 0; i < genreCount; i++) {
+            int genre = genres[i];
+            long bit = 1L << genre;
+            if ((earlierGenres[genre >>> 6] & bit) != 0) {
+                continue;
+            }
+            int[] posting = catalog.postings[genre];
+            for (int p = 0, postingSize = catalog.postingSizes[genre]; p < postingSize; p++) {
+                int ordinal = posting[p];
+                if (!anyGenre(catalog.genreMasks, ordinal * words, earlierGenres)
+                        && Arrays.binarySearch(excluded, 0, excludedCount, ordinal) < 0) {
+                    out.add(catalog.movies[ordinal]);
                 }
             }
+            earlierGenres[genre >>> 6] |= bit;
         }
-        
-        return similarMovies;
     }
-}
\ No newline at end of file
+}
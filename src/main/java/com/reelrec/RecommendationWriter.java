@@ -0,0 +1,93 @@
+package com.reelrec;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes recommendation records for many users through one buffered stream.
+ * Open it once per run instead of reopening the output file for every user.
+ * Format: "Username, UserID", an optional error line, the recommended titles
+ * (or "No recommendations"), then a blank line.
+ */
+public class RecommendationWriter implements RecommendationOutput {
+
+    static final int BUFFER_SIZE = 1 << 16;
+
+    // Time to write one record, for this and the other formats, see MetricsRegistry
+    static final MetricsRegistry.Histogram WRITE_TIME = MetricsRegistry.global().timer("write");
+
+    private final BufferedWriter writer;
+    private int unflushed; // Records written since the last flush, see FlightEvents.OutputFlush
+
+    public RecommendationWriter(String outputPath, boolean append) throws IOException {
+        this.writer = new BufferedWriter(new FileWriter(outputPath, append), BUFFER_SIZE);
+    }
+
+    // Writes the records to an already open writer, e.g. to measure them in memory
+    RecommendationWriter(Writer out) {
+        this.writer = new BufferedWriter(out, BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(User user, List<Movie> recommendations) throws IOException {
+        long start = System.nanoTime();
+        // Write user info; null values are written as "null", like string concatenation
+        writer.write(String.valueOf(user.getName()));
+        writer.write(", ");
+        writer.write(String.valueOf(user.getId()));
+        writer.newLine();
+
+        // If the user has an error message, output that first
+        if (user.getErrorMessage() != null) {
+            writer.write(user.getErrorMessage());
+            writer.newLine();
+        }
+
+        if (recommendations.isEmpty()) {
+            writer.write("No recommendations");
+        } else {
+            for (int i = 0; i < recommendations.size(); i++) {
+                if (i > 0) {
+                    writer.write(", ");
+                }
+                writer.write(String.valueOf(recommendations.get(i).getName()));
+            }
+        }
+
+        // Separate records with blank lines.
+        writer.newLine();
+        writer.newLine();
+        unflushed++;
+        WRITE_TIME.recordSince(start);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        FlightEvents.OutputFlush event = new FlightEvents.OutputFlush();
+        event.begin();
+        writer.flush();
+        flushed(event, unflushed, false);
+        unflushed = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        FlightEvents.OutputFlush event = new FlightEvents.OutputFlush();
+        event.begin();
+        writer.close();
+        flushed(event, unflushed, true);
+        unflushed = 0;
+    }
+
+    // Records the flush of the records written since the last one, for every format
+    static void flushed(FlightEvents.OutputFlush event, int records, boolean closing) {
+        if (event.shouldCommit()) {
+            event.records = records;
+            event.closing = closing;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.reelrec;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Recommendations computed for one user, together with the genres of the user's
+ * watch history they were drawn from. Instances are immutable.
+ */
+public final class Recommendations {
+    private final List<Movie> movies;
+    private final List<String> categories;
+
+    Recommendations(List<Movie> movies, List<String> categories) {
+        this.movies = Collections.unmodifiableList(movies);
+        this.categories = Collections.unmodifiableList(categories);
+    }
+
+    public List<Movie> getMovies() {
+        return movies;
+    }
+
+    public List<String> getCategories() {
+        return categories;
+    }
+}
@@ -1,7 +1,10 @@
 package com.reelrec;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -13,10 +16,46 @@ public class ReelRecProcessor {
     private final String recommendationsFilePath;
     private final Validator validator;
     private final RecommendationSystem recSys;
+    private final Options options;
+
+    // Users between reading and writing at once, which bounds memory in streaming mode
+    static final int STREAMING_WINDOW = 1024;
+
+    // Times of the whole run and of its stages, see MetricsRegistry. Streaming runs
+    // load and write together, so everything after validation counts as output.
+    private static final MetricsRegistry.Histogram RUN_TIME = MetricsRegistry.global().timer("phase.run");
+    private static final MetricsRegistry.Histogram VALIDATE_TIME = MetricsRegistry.global().timer("phase.validate");
+    private static final MetricsRegistry.Histogram LOAD_TIME = MetricsRegistry.global().timer("phase.load");
+    private static final MetricsRegistry.Histogram OUTPUT_TIME = MetricsRegistry.global().timer("phase.output");
+
+    // The injected validator reports errors as text, so user IDs are read back from it
+    private static final Pattern USER_ID_ERROR = Pattern.compile("ERROR: User Id \"([^\"]+)\"");
 
     // Constructor to inject dependencies and paths
     public ReelRecProcessor(String moviesFilePath, String usersFilePath, String recommendationsFilePath,
                              Validator validator, RecommendationSystem recSys) {
+        this(moviesFilePath, usersFilePath, recommendationsFilePath, validator, recSys, false);
+    }
+
+    // In streaming mode the users are read, recommended and written a window at a time
+    // instead of being loaded into recSys first, so memory does not grow with the users file
+    public ReelRecProcessor(String moviesFilePath, String usersFilePath, String recommendationsFilePath,
+                             Validator validator, RecommendationSystem recSys, boolean streaming) {
+        this(moviesFilePath, usersFilePath, recommendationsFilePath, validator, recSys,
+                new Options().streaming(streaming));
+    }
+
+    public ReelRecProcessor(String moviesFilePath, String usersFilePath, String recommendationsFilePath,
+                             Validator validator, RecommendationSystem recSys, boolean streaming,
+                             int shardCount, boolean mergeShards) {
+        this(moviesFilePath, usersFilePath, recommendationsFilePath, validator, recSys,
+                new Options().streaming(streaming).shards(shardCount, mergeShards));
+    }
+
+    public ReelRecProcessor(String moviesFilePath, String usersFilePath, String recommendationsFilePath,
+                             Validator validator, RecommendationSystem recSys, Options options) {
+        options.check();
+        this.options = options.copy();
         this.moviesFilePath = moviesFilePath;
         this.usersFilePath = usersFilePath;
         this.recommendationsFilePath = recommendationsFilePath;
@@ -24,9 +63,90 @@ public class ReelRecProcessor {
         this.recSys = recSys;       // Use injected recSys
     }
 
+    /**
+     * How execute() produces its output. By default all users are loaded and written
+     * to the one recommendations file.
+     */
+    public static final class Options {
+        private boolean streaming;
+        private int shardCount = 1;
+        private boolean mergeShards = true;
+        private boolean incremental;
+        private String metricsSummary = System.getProperty(MetricsRegistry.SUMMARY_PROPERTY);
+
+        // Read, recommend and write the users a window at a time instead of loading them first
+        public Options streaming(boolean streaming) {
+            this.streaming = streaming;
+            return this;
+        }
+
+        // With more than one shard, workers write the recommendations into the files of
+        // RecommendationShards.shardPaths, which are then merged into the recommendations
+        // file, or left for the consumer if mergeShards is false
+        public Options shards(int shardCount, boolean mergeShards) {
+            this.shardCount = shardCount;
+            this.mergeShards = mergeShards;
+            return this;
+        }
+
+        // Copy the records of unchanged users from the last run, see IncrementalRecommendations
+        public Options incremental(boolean incremental) {
+            this.incremental = incremental;
+            return this;
+        }
+
+        // Write what MetricsRegistry recorded during the run to this file as JSON, or
+        // nothing if null. Defaults to the reelrec.metrics.summary system property.
+        public Options metricsSummary(String path) {
+            this.metricsSummary = path;
+            return this;
+        }
+
+        // Sharding and incremental runs need the users loaded, and do not mix
+        void check() {
+            if (shardCount < 1) {
+                throw new IllegalArgumentException("Invalid shard count " + shardCount);
+            }
+            if ((streaming ? 1 : 0) + (shardCount > 1 ? 1 : 0) + (incremental ? 1 : 0) > 1) {
+                throw new IllegalArgumentException("Streaming, sharded and incremental output cannot be combined");
+            }
+        }
+
+        Options copy() {
+            return new Options().streaming(streaming).shards(shardCount, mergeShards).incremental(incremental)
+                    .metricsSummary(metricsSummary);
+        }
+    }
+
     public void execute() {
+        MetricsRegistry.registerMBean();
+        MetricsRegistry.Snapshot start = MetricsRegistry.global().snapshot();
+        long runStart = System.nanoTime();
+        try {
+            process();
+        } finally {
+            RUN_TIME.recordSince(runStart);
+            if (options.metricsSummary != null) {
+                try {
+                    MetricsRegistry.writeSummary(options.metricsSummary, start);
+                } catch (IOException e) {
+                    System.out.println("❌ Error writing metrics summary in Processor: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void process() {
         // NOTE: We don't call printWelcomeMessage here, as it's not part of the processing logic.
 
+        if (options.incremental) {
+            try {
+                IncrementalRecommendations.keepPrevious(recommendationsFilePath);
+            } catch (IOException e) {
+                System.out.println("❌ Error keeping previous recommendations in Processor: " + e.getMessage());
+            }
+        }
+
         // --- Clear recommendations file ---
         try (BufferedWriter bw = new BufferedWriter(new FileWriter(recommendationsFilePath, false))) {
            // Cleared
@@ -38,6 +158,7 @@ public class ReelRecProcessor {
         List<String> movieValidationErrors;
         Set<String> validMovieIds;
         ArrayList<Integer> invalidMovieLines;
+        Stage stage = new Stage();
 
         try {
             movieValidationErrors = validator.parseAndValidateMovies(moviesFilePath);
@@ -58,6 +179,17 @@ public class ReelRecProcessor {
             }
         }
 
+        if (options.streaming) {
+            Map<String, String> userIdErrors = new HashMap<>();
+            if (streamUserValidation(userIdErrors)) {
+                stage.end("validate", VALIDATE_TIME);
+                stage = new Stage();
+                streamRecommendations(invalidMovieLines, validMovieIds, userIdErrors);
+                stage.end("output", OUTPUT_TIME);
+            }
+            return;
+        }
+
         // === Use the INJECTED validator ===
         List<String> userValidationErrors;
         Map<String, String> userIdErrors = new HashMap<>();
@@ -65,13 +197,7 @@ public class ReelRecProcessor {
         try {
              userValidationErrors = validator.parseAndValidateUsers(usersFilePath);
              for (String error : userValidationErrors) {
-                if (error.contains("ERROR: User Id")) {
-                    Pattern pattern = Pattern.compile("ERROR: User Id \"([^\"]+)\"");
-                    Matcher matcher = pattern.matcher(error);
-                    if (matcher.find()) {
-                        userIdErrors.put(matcher.group(1), error);
-                    }
-                }
+                putUserIdError(userIdErrors, error);
             }
         } catch (Exception ex) {
              handleProcessingError("ERROR during user validation: " + ex.getMessage());
@@ -88,8 +214,11 @@ public class ReelRecProcessor {
             }
         }
 
+        stage.end("validate", VALIDATE_TIME);
+
         // === Use the INJECTED RecommendationSystem (recSys) ===
         List<User> users;
+        stage = new Stage();
         try {
             // System.out.println("\n📂 Loading data files (Processor)...");
             recSys.loadMoviesFromFile(moviesFilePath, invalidMovieLines);
@@ -103,31 +232,210 @@ public class ReelRecProcessor {
 
         // Apply user ID format/uniqueness errors
         for (User user : users) {
-            if (userIdErrors.containsKey(user.getId()) && user.getErrorMessage() == null) {
-                user.setErrorMessage(userIdErrors.get(user.getId()));
-                user.clearWatchList();
-            }
+            applyUserIdError(user, userIdErrors);
         }
+        stage.end("load", LOAD_TIME);
 
         // Generate recommendations and write output
         // System.out.println("\n🎬 Generating recommendations (Processor)...");
-        int processedUsers = 0;
+        int[] processedUsers = {0};
         if (users.isEmpty()) {
              // System.out.println("   No users loaded or found to process (Processor).");
-              try (BufferedWriter writer = new BufferedWriter(new FileWriter(recommendationsFilePath, true))) {
-                 writer.newLine(); writer.write("-- No users processed --"); writer.newLine();
-             } catch (IOException writeEx) { /* Ignore */}
+             writeNoUsersProcessed();
         }
 
-        for (User user : users) {
+        stage = new Stage();
+        if (options.shardCount > 1) {
+            printCompleted(writeShards(users));
+            stage.end("output", OUTPUT_TIME);
+            return;
+        }
+        if (options.incremental) {
+            printCompleted(writeIncrementally(users));
+            stage.end("output", OUTPUT_TIME);
+            return;
+        }
+
+        try (RecommendationWriter writer = new RecommendationWriter(recommendationsFilePath, true)) {
+            RecommendationPipeline pipeline = newPipeline(writer, processedUsers);
+            for (User user : users) {
+                pipeline.submit(user);
+            }
+            pipeline.finish();
+        } catch (IOException e) {
+            System.out.println("   ❌ Error writing recommendations in Processor: " + e.getMessage());
+        }
+        stage.end("output", OUTPUT_TIME);
+
+        printCompleted(processedUsers[0]);
+    }
+
+    // Times one stage of the run, for MetricsRegistry and as a FlightEvents.Phase
+    private final class Stage {
+        private final long start = System.nanoTime();
+        private final FlightEvents.Phase event = new FlightEvents.Phase();
+
+        Stage() {
+            event.begin();
+        }
+
+        void end(String phase, MetricsRegistry.Histogram time) {
+            time.recordSince(start);
+            if (event.shouldCommit()) {
+                event.phase = phase;
+                event.mode = options.streaming ? "streaming" : options.shardCount > 1 ? "sharded"
+                        : options.incremental ? "incremental" : "full";
+                event.commit();
+            }
+        }
+    }
+
+    // Validates the users file, printing the warnings as they are found and keeping only
+    // the user ID errors. Returns false if processing has to stop.
+    private boolean streamUserValidation(Map<String, String> userIdErrors) {
+        boolean[] anyWarnings = {false};
+        try {
+            validator.validateUsers(usersFilePath, error -> {
+                String message = error.message();
+                if (!anyWarnings[0]) {
+                    System.out.println("\n⚠️ USER FILE WARNINGS (Processor) ⚠️");
+                    anyWarnings[0] = true;
+                }
+                System.out.println("   • " + message);
+                // An empty ID matches no user, as with the rendered errors below
+                if (error.isUserIdError() && !error.value().isEmpty()) {
+                    userIdErrors.put(error.value(), message);
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            String error = ValidationError.unreadable(usersFilePath).message();
+            printValidationWarnings("USER FILE WARNINGS (Processor)", List.of(error));
+            handleProcessingError(error);
+            return false;
+        } catch (Exception ex) {
+            handleProcessingError("ERROR during user validation: " + ex.getMessage());
+            return false;
+        }
+        if (anyWarnings[0]) {
+            System.out.println();
+        }
+        return true;
+    }
+
+    // Remembers the error of a user ID that is malformed or not unique, from an
+    // injected validator's rendered errors
+    private static void putUserIdError(Map<String, String> userIdErrors, String error) {
+        if (error.contains("ERROR: User Id")) {
+            Matcher matcher = USER_ID_ERROR.matcher(error);
+            if (matcher.find()) {
+                userIdErrors.put(matcher.group(1), error);
+            }
+        }
+    }
+
+    // Loads the movies, then reads the users one record at a time and hands them to
+    // the pipeline, which holds at most STREAMING_WINDOW users. The output is the same
+    // as loading all users first.
+    private void streamRecommendations(ArrayList<Integer> invalidMovieLines, Set<String> validMovieIds,
+                                       Map<String, String> userIdErrors) {
+        try {
+            recSys.loadMoviesFromFile(moviesFilePath, invalidMovieLines);
+        } catch (IOException e) {
+            handleProcessingError("ERROR: Could not load input files: " + e.getMessage());
+            return;
+        }
+
+        IOException loadError = null;
+        long streamedUsers = -1;
+        int[] processedUsers = {0};
+        try (RecommendationWriter writer = new RecommendationWriter(recommendationsFilePath, true)) {
+            RecommendationPipeline pipeline = newPipeline(writer, processedUsers);
             try {
-                recSys.writeRecommendationsToFile(user, recommendationsFilePath);
-                processedUsers++;
+                recSys.forEachUserInFile(usersFilePath, new BitSet(), validMovieIds, user -> {
+                    applyUserIdError(user, userIdErrors);
+                    pipeline.submit(user);
+                });
+            } catch (IOException e) {
+                loadError = e; // Reported once the writer is closed
+            }
+            streamedUsers = pipeline.finish();
+        } catch (IOException e) {
+            System.out.println("   ❌ Error writing recommendations in Processor: " + e.getMessage());
+        }
+        if (loadError != null) {
+            handleProcessingError("ERROR: Could not load input files: " + loadError.getMessage());
+            return;
+        }
+
+        if (streamedUsers == 0) {
+            writeNoUsersProcessed();
+        }
+        printCompleted(processedUsers[0]);
+    }
+
+    // Applies a user ID format/uniqueness error to a user without another error
+    private static void applyUserIdError(User user, Map<String, String> userIdErrors) {
+        if (userIdErrors.containsKey(user.getId()) && user.getErrorMessage() == null) {
+            user.setErrorMessage(userIdErrors.get(user.getId()));
+            user.clearWatchList();
+        }
+    }
+
+    // Computes recommendations on the common pool while the pipeline's writer thread
+    // writes them in order, counting the users written in processedUsers
+    private RecommendationPipeline newPipeline(RecommendationOutput writer, int[] processedUsers) {
+        return new RecommendationPipeline(recSys, ForkJoinPool.commonPool(), STREAMING_WINDOW, (user, recommendations) -> {
+            try {
+                recSys.writeRecommendations(writer, user, recommendations);
+                processedUsers[0]++;
             } catch (IOException e) {
                 System.out.println("   ❌ Error writing recommendations in Processor for user: " + user.getName() + " - " + e.getMessage());
             }
+        });
+    }
+
+    // Writes the users into shards in parallel, then merges them after whatever the
+    // recommendations file holds already. Returns the number of users written.
+    private int writeShards(List<User> users) {
+        List<String> shardPaths = RecommendationShards.shardPaths(recommendationsFilePath, options.shardCount);
+        int processedUsers = 0;
+        try {
+            processedUsers = RecommendationShards.write(recSys, users, shardPaths, ForkJoinPool.commonPool(),
+                    (user, e) -> System.out.println("   ❌ Error writing recommendations in Processor for user: " + user.getName() + " - " + e.getMessage()));
+            if (options.mergeShards) {
+                RecommendationShards.merge(shardPaths, recommendationsFilePath, true);
+                for (String shardPath : shardPaths) {
+                    Files.deleteIfExists(Paths.get(shardPath));
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("   ❌ Error writing recommendations in Processor: " + e.getMessage());
+        }
+        return processedUsers;
+    }
+
+    // Writes the users' records, copying those of unchanged users from the previous run.
+    // Returns the number of users written.
+    private int writeIncrementally(List<User> users) {
+        try {
+            byte[] catalogHash = CatalogSnapshot.sourceHash(moviesFilePath);
+            int recomputed = IncrementalRecommendations.write(recSys, users, recommendationsFilePath, catalogHash);
+            System.out.println("   ♻️ Recomputed " + recomputed + " of " + users.size() + " users (Processor)");
+            return users.size();
+        } catch (IOException e) {
+            System.out.println("   ❌ Error writing recommendations in Processor: " + e.getMessage());
+            return 0;
         }
+    }
+
+    private void writeNoUsersProcessed() {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(recommendationsFilePath, true))) {
+            writer.newLine(); writer.write("-- No users processed --"); writer.newLine();
+        } catch (IOException writeEx) { /* Ignore */}
+    }
 
+    private static void printCompleted(int processedUsers) {
         System.out.println("\n🎉 Completed (Processor)! Successfully processed " + processedUsers + " users.");
         // System.out.println("📄 Recommendations saved to (Processor): " + recommendationsFilePath);
     }
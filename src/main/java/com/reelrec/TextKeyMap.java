@@ -0,0 +1,140 @@
+package com.reelrec;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map with String keys that can be looked up by any range of
+ * a CharSequence, so a token scanned out of a line can be found without first
+ * copying it into a String.
+ */
+final class TextKeyMap<V> {
+
+    private String[] keys = new String[16];
+    private Object[] values = new Object[16];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the slot holding the key equal to {@code s[from, to)}, or -1 if there is none.
+     */
+    int find(CharSequence s, int from, int to) {
+        int mask = keys.length - 1;
+        for (int slot = hash(s, from, to) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (matches(keys[slot], s, from, to)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    V valueAt(int slot) {
+        return (V) values[slot];
+    }
+
+    String keyAt(int slot) {
+        return keys[slot];
+    }
+
+    // Number of slots, for iterating with keyAt
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Maps the key to the value and returns the value it replaced, or null.
+     */
+    V put(String key, V value) {
+        int slot = find(key, 0, key.length());
+        if (slot >= 0) {
+            V previous = valueAt(slot);
+            values[slot] = value;
+            return previous;
+        }
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+        insert(key, value);
+        size++;
+        return null;
+    }
+
+    /**
+     * Removes the key and returns the value it had, or null. Later keys of the same
+     * probe run are shifted back, so lookups never stop at the freed slot.
+     */
+    V remove(String key) {
+        int slot = find(key, 0, key.length());
+        if (slot < 0) {
+            return null;
+        }
+        V previous = valueAt(slot);
+        int mask = keys.length - 1;
+        int free = slot;
+        for (int next = (slot + 1) & mask; keys[next] != null; next = (next + 1) & mask) {
+            int home = hash(keys[next], 0, keys[next].length()) & mask;
+            // Move the key back unless its home slot lies cyclically in (free, next]
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        keys[free] = null;
+        values[free] = null;
+        size--;
+        return previous;
+    }
+
+    void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new String[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != null) {
+                insert(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    private void insert(String key, Object value) {
+        int mask = keys.length - 1;
+        int slot = hash(key, 0, key.length()) & mask;
+        while (keys[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+    }
+
+    // Same as String.hashCode over the range, with the high bits folded in
+    private static int hash(CharSequence s, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + s.charAt(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String key, CharSequence s, int from, int to) {
+        if (key.length() != to - from) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != s.charAt(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
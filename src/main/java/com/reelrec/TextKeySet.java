@@ -0,0 +1,76 @@
+package com.reelrec;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of Strings that can also be probed with a range of a CharSequence, see
+ * {@link TextKeyMap}. The iterator does not support removal.
+ */
+final class TextKeySet extends AbstractSet<String> {
+
+    private final TextKeyMap<Boolean> map = new TextKeyMap<>();
+
+    @Override
+    public boolean add(String value) {
+        return map.put(value, Boolean.TRUE) == null;
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        if (!(value instanceof CharSequence)) {
+            return false;
+        }
+        CharSequence s = (CharSequence) value;
+        return contains(s, 0, s.length());
+    }
+
+    boolean contains(CharSequence s, int from, int to) {
+        return map.find(s, from, to) >= 0;
+    }
+
+    @Override
+    public boolean remove(Object value) {
+        return value instanceof String && map.remove((String) value) != null;
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int slot = advance(0);
+
+            private int advance(int from) {
+                while (from < map.capacity() && map.keyAt(from) == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return slot < map.capacity();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String key = map.keyAt(slot);
+                slot = advance(slot + 1);
+                return key;
+            }
+        };
+    }
+}
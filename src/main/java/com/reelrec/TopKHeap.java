@@ -0,0 +1,97 @@
+package com.reelrec;
+
+/**
+ * Bounded min-heap of movie ordinals keyed by score, kept in primitive arrays.
+ * Among equal scores the ordinal offered first ranks higher, so a full heap only
+ * accepts candidates that score strictly better than its current minimum.
+ */
+final class TopKHeap {
+
+    private final long[] keys;    // score in the high half, inverted arrival rank in the low half
+    private final int[] ordinals;
+    private int size;
+    private int arrivals;
+
+    TopKHeap(int capacity) {
+        this.keys = new long[capacity];
+        this.ordinals = new int[capacity];
+    }
+
+    boolean isFull() {
+        return size == keys.length;
+    }
+
+    /**
+     * Returns the lowest score in a full heap, or -1 if there is still room.
+     */
+    int minScore() {
+        return isFull() && size > 0 ? (int) (keys[0] >>> 32) : -1;
+    }
+
+    void offer(int ordinal, int score) {
+        long key = ((long) score << 32) | (0xFFFFFFFFL & ~arrivals++);
+        if (!isFull()) {
+            keys[size] = key;
+            ordinals[size] = ordinal;
+            siftUp(size++);
+        } else if (size > 0 && key > keys[0]) {
+            keys[0] = key;
+            ordinals[0] = ordinal;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Empties the heap and returns its ordinals, best first.
+     */
+    int[] drain() {
+        int[] result = new int[size];
+        while (size > 0) {
+            result[size - 1] = ordinals[0];
+            size--;
+            keys[0] = keys[size];
+            ordinals[0] = ordinals[size];
+            siftDown(0);
+        }
+        return result;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= keys[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && keys[left] < keys[smallest]) {
+                smallest = left;
+            }
+            if (right < size && keys[right] < keys[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        int ordinal = ordinals[a];
+        ordinals[a] = ordinals[b];
+        ordinals[b] = ordinal;
+    }
+}
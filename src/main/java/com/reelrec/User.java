@@ -42,6 +42,10 @@ public class User {
         WatchList.add(movie);
     }
 
+    public void setWatchList(List<Movie> watchList) {
+        this.WatchList = watchList;
+    }
+
     public void clearWatchList() {
         WatchList.clear();
     }
@@ -0,0 +1,87 @@
+package com.reelrec;
+
+/**
+ * Set of well-formed user IDs (eight digits and a letter or digit) packed into longs,
+ * so remembering every ID of a large users file takes a few bytes per user instead of
+ * a String each. IDs are looked up by a range of a CharSequence, like {@link TextKeySet}.
+ */
+final class UserIdSet {
+
+    private long[] keys = new long[16]; // 0 marks an empty slot; no ID packs to 0
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(CharSequence s, int from, int to) {
+        long key = pack(s, from, to);
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the ID and returns whether it was new.
+     */
+    boolean add(CharSequence s, int from, int to) {
+        if (contains(s, from, to)) {
+            return false;
+        }
+        if (2 * (size + 1) > keys.length) {
+            long[] old = keys;
+            keys = new long[old.length * 2];
+            for (long key : old) {
+                if (key != 0) {
+                    insert(key);
+                }
+            }
+        }
+        insert(pack(s, from, to));
+        size++;
+        return true;
+    }
+
+    void clear() {
+        keys = new long[16];
+        size = 0;
+    }
+
+    private void insert(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+    }
+
+    // The eight digits as a number, times 128, plus the last character
+    private static long pack(CharSequence s, int from, int to) {
+        if (to - from != 9) {
+            throw new IllegalArgumentException("Not a user ID: " + s.subSequence(from, to));
+        }
+        long key = 0;
+        for (int i = from; i < from + 8; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Not a user ID: " + s.subSequence(from, to));
+            }
+            key = key * 10 + (c - '0');
+        }
+        char last = s.charAt(from + 8);
+        if (last < '0' || last > 'z') {
+            throw new IllegalArgumentException("Not a user ID: " + s.subSequence(from, to));
+        }
+        return key * 128 + last;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
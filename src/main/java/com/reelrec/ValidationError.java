@@ -0,0 +1,80 @@
+package com.reelrec;
+
+/**
+ * One problem found while validating an input file. The code says what is wrong,
+ * line is the 1-based line it was found on (0 when the whole file is unreadable)
+ * and value is the offending title, ID, genre or name, or null if there is none.
+ * The user-facing text is only built by {@link #message()}.
+ */
+public record ValidationError(Code code, String file, int line, String value) {
+
+    public enum Code {
+        MOVIE_TITLE("ERROR: Movie Title", "is wrong", "movies"),
+        MOVIE_ID_FORMAT("ERROR: Movie Id format", "is wrong", "movies"),
+        MOVIE_ID_LETTERS("ERROR: Movie Id letters", "are wrong", "movies"),
+        MOVIE_ID_NOT_UNIQUE("ERROR: Movie Id numbers", "aren't unique", "movies"),
+        MOVIE_GENRE("ERROR: Movie genre", "is not supported", "movies"),
+        MOVIE_FORMAT("ERROR: Movie Formatting", "is wrong", "movies"),
+        MOVIE_NO_GENRES("ERROR: Movie", "has no genres", "movies"),
+        USER_NAME("ERROR: User Name", "is wrong", "users"),
+        USER_ID("ERROR: User Id", "is wrong", "users"),
+        USER_ID_NOT_UNIQUE("ERROR: User Id", "is not unique", "users"),
+        USER_FORMAT("ERROR: User Formatting", "is wrong", "users"),
+        USER_NO_MOVIES("ERROR: User", "has no movies", "users"),
+        UNKNOWN_MOVIE("ERROR: Movie Id", "is not in the movies file", "users"),
+        FILE_UNREADABLE("ERROR: File", "not found or cannot be read", null);
+
+        private final String subject;
+        private final String problem;
+        private final String fileKind;
+
+        Code(String subject, String problem, String fileKind) {
+            this.subject = subject;
+            this.problem = problem;
+            this.fileKind = fileKind;
+        }
+
+        /**
+         * Returns the error text without its location, e.g. {@code ERROR: Movie Title "x" is wrong}.
+         */
+        String describe(String value) {
+            if (value == null) {
+                return subject + " " + problem;
+            }
+            return subject + " \"" + value + "\" " + problem;
+        }
+    }
+
+    static ValidationError unreadable(String file) {
+        return new ValidationError(Code.FILE_UNREADABLE, file, 0, null);
+    }
+
+    /**
+     * Renders the error exactly as the validator has always reported it.
+     */
+    public String message() {
+        switch (code) {
+            case UNKNOWN_MOVIE:
+                return code.subject + " \"" + value + "\" at line " + line + " " + code.problem;
+            case FILE_UNREADABLE:
+                return code.describe(null);
+            default:
+                return code.describe(value) + " at line " + line + " in the " + code.fileKind + " file.";
+        }
+    }
+
+    // The user's ID itself was rejected, so the whole user is invalid
+    public boolean isUserIdError() {
+        return code == Code.USER_ID || code == Code.USER_ID_NOT_UNIQUE;
+    }
+
+    // The file could not be read at all, so nothing was loaded from it
+    public boolean isCritical() {
+        return code == Code.FILE_UNREADABLE;
+    }
+
+    @Override
+    public String toString() {
+        return message();
+    }
+}
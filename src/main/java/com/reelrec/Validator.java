@@ -1,90 +1,231 @@
 package com.reelrec;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class Validator {
-    Set<String> existingMovieIds = new HashSet<>();
-    Set<String> existingMovieIdNumbers = new HashSet<>();
-    Set<String> existingUserIds = new HashSet<>();
+    // Sets that can also be probed with part of a line, see TextKeySet
+    TextKeySet existingMovieIds = new TextKeySet();
+    TextKeySet existingMovieIdNumbers = new TextKeySet();
+    UserIdSet existingUserIds = new UserIdSet(); // Only well-formed IDs are added
     List<String> validGenres = Arrays.asList("ACTION", "COMEDY", "CRIME", "DOCUMENTARY", "DRAMA",
             "FAMILY", "HORROR", "ROMANCE", "SCIFI", "THRILLER");
+    // validGenres hashed by ASCII-case-insensitive hash, probed linearly
+    private final String[] genreTable = buildGenreTable(validGenres);
+
+    // Records checked, records with an error, and errors, see MetricsRegistry
+    private static final MetricsRegistry.Counter MOVIE_RECORDS = MetricsRegistry.global().counter("validate.movieRecords");
+    private static final MetricsRegistry.Counter USER_RECORDS = MetricsRegistry.global().counter("validate.userRecords");
+    private static final MetricsRegistry.Counter INVALID_RECORDS = MetricsRegistry.global().counter("validate.invalidRecords");
+    private static final MetricsRegistry.Counter ERRORS = MetricsRegistry.global().counter("validate.errors");
+    private static final MetricsRegistry.Histogram MOVIES_TIME = MetricsRegistry.global().timer("validate.movies");
+    private static final MetricsRegistry.Histogram USERS_TIME = MetricsRegistry.global().timer("validate.users");
 
     // Validates movie title (each word in the movie title starts with a capital
     // letter or a digit)
 
     String checkMovieTitle(String title) {
-        if (title.trim().matches("^\\d+$")) {
-            return String.format("ERROR: Movie Title \"%s\" is wrong", title);
+        return describe(movieTitleProblem(title, 0, title.length()), title);
+    }
+
+    // Scans the trimmed title once: it must not be all digits, and every word between
+    // single whitespace characters must start with an upper case letter or a digit
+    private ValidationError.Code movieTitleProblem(CharSequence title, int from, int to) {
+        int start = LineFields.trimStart(title, from, to);
+        int end = LineFields.trimEnd(title, start, to);
+        if (start == end || isAsciiDigits(title, start, end)) {
+            return ValidationError.Code.MOVIE_TITLE;
         }
-        String[] words = title.trim().split("\\s");
-        for (String word : words) {
-            if (word.isEmpty()) {
-                return String.format("ERROR: Movie Title \"%s\" is wrong", title);
-            }
-            char firstChar = word.charAt(0);
-            if (!Character.isUpperCase(firstChar) && !Character.isDigit(firstChar)) {
-                return String.format("ERROR: Movie Title \"%s\" is wrong", title);
+        boolean wordStart = true;
+        for (int i = start; i < end; i++) {
+            char c = title.charAt(i);
+            if (isRegexSpace(c)) {
+                if (wordStart) {
+                    return ValidationError.Code.MOVIE_TITLE; // Empty word between two spaces
+                }
+                wordStart = true;
+            } else if (wordStart) {
+                if (!Character.isUpperCase(c) && !Character.isDigit(c)) {
+                    return ValidationError.Code.MOVIE_TITLE;
+                }
+                wordStart = false;
             }
         }
-        return "";
+        return null;
     }
 
     // Validates movie ID (starts with capital letters of the title, followed by 3
     // unique digits)
     // Note: this assumes valid movie title is already checked
     String checkMovieId(String movieId, String title) {
-        if (!movieId.matches("^[A-Z]+\\d{3}$")) {
-            return String.format("ERROR: Movie Id format \"%s\" is wrong", movieId);
+        return describe(movieIdProblem(movieId, 0, movieId.length(), title, 0, title.length()), movieId);
+    }
+
+    private ValidationError.Code movieIdProblem(CharSequence movieId, int idFrom, int idTo,
+                                                CharSequence title, int titleFrom, int titleTo) {
+        // One or more of A-Z followed by exactly three digits
+        int letters = idTo - idFrom - 3;
+        if (letters < 1 || !isAsciiDigits(movieId, idTo - 3, idTo)) {
+            return ValidationError.Code.MOVIE_ID_FORMAT;
         }
-        String capitalLetters = new String();
-        for (char letter : title.toCharArray()) {
+        for (int i = 0; i < letters; i++) {
+            char c = movieId.charAt(idFrom + i);
+            if (c < 'A' || c > 'Z') {
+                return ValidationError.Code.MOVIE_ID_FORMAT;
+            }
+        }
+        // The letters must be the title's capital letters, in order
+        int next = 0;
+        for (int i = titleFrom; i < titleTo; i++) {
+            char letter = title.charAt(i);
             if (Character.isUpperCase(letter)) {
-                capitalLetters += letter;
+                if (next == letters || movieId.charAt(idFrom + next) != letter) {
+                    return ValidationError.Code.MOVIE_ID_LETTERS;
+                }
+                next++;
             }
         }
-        String IdPattern = capitalLetters + "\\d{3}";
-        String numberPart = movieId.replaceAll("[^0-9]", "");
-        if (!movieId.matches(IdPattern))
-            return String.format("ERROR: Movie Id letters \"%s\" are wrong", movieId);
-        if (this.existingMovieIdNumbers.contains(numberPart))
-            return String.format("ERROR: Movie Id numbers \"%s\" aren't unique", movieId);
-        return "";
+        if (next != letters)
+            return ValidationError.Code.MOVIE_ID_LETTERS;
+        if (this.existingMovieIdNumbers.contains(movieId, idTo - 3, idTo))
+            return ValidationError.Code.MOVIE_ID_NOT_UNIQUE;
+        return null;
     }
 
     // Validates movie genre (only valid genres are allowed)
     String checkMovieGenre(String genre) {
-        if (!validGenres.contains(genre.toUpperCase())) {
-            return String.format("ERROR: Movie genre \"%s\" is not supported", genre);
+        return describe(movieGenreProblem(genre, 0, genre.length()), genre);
+    }
+
+    private ValidationError.Code movieGenreProblem(CharSequence genre, int from, int to) {
+        if (!isValidGenre(genre, from, to)) {
+            return ValidationError.Code.MOVIE_GENRE;
+        }
+        return null;
+    }
+
+    // Same answer as validGenres.contains(genre.toUpperCase()), without building the
+    // upper case copy unless the genre has non-ASCII characters
+    private boolean isValidGenre(CharSequence genre, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            char c = genre.charAt(i);
+            if (c >= 0x80) {
+                return validGenres.contains(LineFields.text(genre, from, to).toUpperCase());
+            }
+            hash = 31 * hash + toAsciiUpper(c);
+        }
+        int mask = genreTable.length - 1;
+        for (int slot = mix(hash) & mask; genreTable[slot] != null; slot = (slot + 1) & mask) {
+            if (equalsIgnoreAsciiCase(genreTable[slot], genre, from, to)) {
+                return true;
+            }
         }
-        return "";
+        return false;
+    }
+
+    private static boolean equalsIgnoreAsciiCase(String candidate, CharSequence s, int from, int to) {
+        if (candidate.length() != to - from) {
+            return false;
+        }
+        for (int i = 0; i < candidate.length(); i++) {
+            if (toAsciiUpper(candidate.charAt(i)) != toAsciiUpper(s.charAt(from + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String[] buildGenreTable(List<String> genres) {
+        int size = Integer.highestOneBit(Math.max(1, genres.size()) * 4);
+        String[] table = new String[size];
+        for (String genre : genres) {
+            int slot = mix(genre.toUpperCase().hashCode()) & (size - 1);
+            while (table[slot] != null) {
+                slot = (slot + 1) & (size - 1);
+            }
+            table[slot] = genre;
+        }
+        return table;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
     }
 
     // Validates user name (only alphabet and space, no starting space)
     String checkUserName(String name) {
-        if (!name.matches("[A-Za-z]+(\\s[A-Za-z]+)*"))
-            return String.format("ERROR: User Name \"%s\" is wrong", name);
-        return "";
+        return describe(userNameProblem(name, 0, name.length()), name);
+    }
+
+    // Words of ASCII letters separated by single whitespace characters
+    private ValidationError.Code userNameProblem(CharSequence name, int from, int to) {
+        boolean wordStart = true;
+        for (int i = from; i < to; i++) {
+            char c = name.charAt(i);
+            if (isAsciiLetter(c)) {
+                wordStart = false;
+            } else if (isRegexSpace(c) && !wordStart) {
+                wordStart = true;
+            } else {
+                return ValidationError.Code.USER_NAME;
+            }
+        }
+        if (wordStart) // Empty name or trailing whitespace
+            return ValidationError.Code.USER_NAME;
+        return null;
     }
 
     // Validates user ID (9 characters, first 8 must be digits, last can be digit or letter)
     String checkUserId(String userId) {
-        if (userId.matches("^\\d{8}[A-Za-z0-9]$")) {
-            if (!this.existingUserIds.contains(userId)) {
-                return "";
+        return describe(userIdProblem(userId, 0, userId.length()), userId);
+    }
+
+    private ValidationError.Code userIdProblem(CharSequence userId, int from, int to) {
+        if (to - from == 9 && isAsciiDigits(userId, from, from + 8)
+                && (isAsciiLetter(userId.charAt(from + 8)) || isAsciiDigits(userId, from + 8, to))) {
+            if (!this.existingUserIds.contains(userId, from, to)) {
+                return null;
             } else {
-                return String.format("ERROR: User Id \"%s\" is not unique", userId);
+                return ValidationError.Code.USER_ID_NOT_UNIQUE;
             }
         }
-        return String.format("ERROR: User Id \"%s\" is wrong", userId);
+        return ValidationError.Code.USER_ID;
+    }
+
+    private static boolean isAsciiDigits(CharSequence s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static char toAsciiUpper(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+
+    // The characters matched by \s in a regex
+    private static boolean isRegexSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    // The check methods report problems as text, or "" if there is none
+    private static String describe(ValidationError.Code code, String value) {
+        return code == null ? "" : code.describe(value);
     }
 
     // Parses and validates movies from a file, returns a list of errors (if empty
@@ -100,66 +241,118 @@ public class Validator {
     // }
 
     public List<String> parseAndValidateMovies(String filepath) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
+        return render(validateMovies(filepath));
+    }
+
+    /**
+     * Validates the movies file and returns its errors in file order, or a single
+     * FILE_UNREADABLE error if the file cannot be read.
+     */
+    public List<ValidationError> validateMovies(String filepath) {
+        long start = System.nanoTime();
+        FlightEvents.Validation event = new FlightEvents.Validation();
+        event.begin();
+        try (MappedLineReader reader = new MappedLineReader(filepath)) {
             int lineNumber = 0;
-            String line;
-            String movetitle, movieId = null, result;
-            boolean validId;
-            // int numOfValidGenres = 0;
-            List<String> errors = new ArrayList<>();
+            int invalidRecords = 0;
+            CharSequence line;
+            List<ValidationError> errors = new ArrayList<>();
             while ((line = reader.readLine()) != null) {
-                validId = false;
                 lineNumber++;
-                String[] parts = line.split(",");
-                if (parts.length == 2) {
-                    movetitle = parts[0].trim();
-                    movieId = parts[1].trim();
-                    result = checkMovieTitle(movetitle);
-                    if (!result.equals("")) {
-                        errors.add(result + " at line " + lineNumber + " in the movies file.");
-                    } else {
-                        result = checkMovieId(movieId, movetitle);
-                        if (!result.equals("")) {
-                            errors.add(result + " at line " + lineNumber + " in the movies file.");
-                        } else {
-                            validId = true;
-                        }
-                    }
-                } else {
-                    errors.add("ERROR: Movie Formatting is wrong at line " + lineNumber + " in the movies file.");
+                if (validateMovieRecord(filepath, line, reader.readLine(), lineNumber, errors) != 0) {
+                    invalidRecords++;
                 }
-                line = reader.readLine();
                 lineNumber++;
-                // numOfValidGenres = 0;
-                if (!line.isEmpty()) {
-                    parts = line.split(",");
-                    for (String genre : parts) {
-                        genre = genre.trim();
-                        result = checkMovieGenre(genre);
-                        if (!result.equals("")) {
-                            errors.add(result + " at line " + lineNumber + " in the movies file.");
-                        }
-                        // else{
-                        //     numOfValidGenres++;
-                        // }
-                    }
-                } else {
-                    errors.add("ERROR: Movie has no genres at line " + lineNumber + " in the movies file.");
-                }
-                if(validId){ // add later && numOfValidGenres > 0
-                    String numberPart = movieId.replaceAll("[^0-9]", "");
-                    this.existingMovieIds.add(movieId);
-                    this.existingMovieIdNumbers.add(numberPart);
-                }
             }
 
+            commit(event, filepath, "movies", lineNumber / 2, invalidRecords, errors.size());
             return errors;
 
         } catch (IOException e) {
             e.printStackTrace();
-            List<String> errors = new ArrayList<>();
-            errors.add("ERROR: File not found or cannot be read");
+            List<ValidationError> errors = new ArrayList<>();
+            errors.add(ValidationError.unreadable(filepath));
             return errors;
+        } finally {
+            MOVIES_TIME.recordSince(start);
+        }
+    }
+
+    // Flags returned by the record checks, telling which of the two lines had errors
+    static final int FIRST_LINE_INVALID = 1;
+    static final int SECOND_LINE_INVALID = 2;
+
+    // Validates one movie record ("Title, ID" at lineNumber, genres on the next line),
+    // adds its errors and returns which of its lines were invalid. The lines are split
+    // in place, with the same fields as String.split(",") and trim.
+    int validateMovieRecord(String file, CharSequence line, CharSequence genresLine, int lineNumber,
+                            List<ValidationError> errors) {
+        int errorsBefore = errors.size();
+        boolean validId = false;
+        int invalid = 0;
+        int idFrom = 0, idTo = 0;
+        int comma = LineFields.indexOf(line, ',', 0, line.length());
+        int end = LineFields.fieldsEnd(line);
+        if (LineFields.hasTwoFields(line, comma, end)) {
+            int titleFrom = LineFields.trimStart(line, 0, comma);
+            int titleTo = LineFields.trimEnd(line, titleFrom, comma);
+            idFrom = LineFields.trimStart(line, comma + 1, end);
+            idTo = LineFields.trimEnd(line, idFrom, end);
+            ValidationError.Code result = movieTitleProblem(line, titleFrom, titleTo);
+            if (result != null) {
+                errors.add(new ValidationError(result, file, lineNumber, LineFields.text(line, titleFrom, titleTo)));
+                invalid |= FIRST_LINE_INVALID;
+            } else {
+                result = movieIdProblem(line, idFrom, idTo, line, titleFrom, titleTo);
+                if (result != null) {
+                    errors.add(new ValidationError(result, file, lineNumber, LineFields.text(line, idFrom, idTo)));
+                    invalid |= FIRST_LINE_INVALID;
+                } else {
+                    validId = true;
+                }
+            }
+        } else {
+            errors.add(new ValidationError(ValidationError.Code.MOVIE_FORMAT, file, lineNumber, null));
+            invalid |= FIRST_LINE_INVALID;
+        }
+        lineNumber++;
+        if (genresLine.length() != 0) {
+            int genresEnd = LineFields.fieldsEnd(genresLine);
+            for (int start = 0; start < genresEnd; ) {
+                int next = LineFields.indexOf(genresLine, ',', start, genresEnd);
+                int fieldEnd = next < 0 ? genresEnd : next;
+                int genreFrom = LineFields.trimStart(genresLine, start, fieldEnd);
+                int genreTo = LineFields.trimEnd(genresLine, genreFrom, fieldEnd);
+                ValidationError.Code result = movieGenreProblem(genresLine, genreFrom, genreTo);
+                if (result != null) {
+                    errors.add(new ValidationError(result, file, lineNumber, LineFields.text(genresLine, genreFrom, genreTo)));
+                    invalid |= SECOND_LINE_INVALID;
+                }
+                start = fieldEnd + 1;
+            }
+        } else {
+            errors.add(new ValidationError(ValidationError.Code.MOVIE_NO_GENRES, file, lineNumber, null));
+            invalid |= SECOND_LINE_INVALID;
+        }
+        if(validId){ // add later && numOfValidGenres > 0
+            String movieId = LineFields.text(line, idFrom, idTo);
+            this.existingMovieIds.add(movieId);
+            this.existingMovieIdNumbers.add(idNumbers(movieId));
+        }
+        MOVIE_RECORDS.increment();
+        count(invalid, errors.size() - errorsBefore);
+        return invalid;
+    }
+
+    // A valid ID ends in three digits, which no other movie may use
+    private static String idNumbers(String movieId) {
+        return movieId.substring(movieId.length() - 3);
+    }
+
+    // Forgets the ID of a removed movie, so that it and its three digits can be used again
+    void forgetMovieId(String movieId) {
+        if (existingMovieIds.remove(movieId)) {
+            existingMovieIdNumbers.remove(idNumbers(movieId));
         }
     }
 
@@ -168,82 +361,197 @@ public class Validator {
     // Note: before calling this call parseAndValidateMovies to populate
     // existingMovieIds
     public List<String> parseAndValidateUsers(String filepath) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
+        return render(validateUsers(filepath));
+    }
+
+    /**
+     * Validates the users file against the movies validated so far and returns its
+     * errors in file order, or a single FILE_UNREADABLE error if it cannot be read.
+     */
+    public List<ValidationError> validateUsers(String filepath) {
+        try {
+            List<ValidationError> errors = new ArrayList<>();
+            validateUsers(filepath, errors::add);
+            return errors;
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            List<ValidationError> errors = new ArrayList<>();
+            errors.add(ValidationError.unreadable(filepath));
+            return errors;
+        }
+    }
+
+    /**
+     * Validates the users file like {@link #validateUsers(String)}, but hands each error
+     * to the action as soon as its record has been checked instead of collecting them.
+     */
+    public void validateUsers(String filepath, Consumer<ValidationError> action) throws IOException {
+        long start = System.nanoTime();
+        FlightEvents.Validation event = new FlightEvents.Validation();
+        event.begin();
+        try (MappedLineReader reader = new MappedLineReader(filepath)) {
             int lineNumber = 0;
-            String line;
-            String username, userId = null, result;
-            List<String> errors = new ArrayList<>();
-            boolean validId;
-            // int numOfValidMovies = 0;
+            int invalidRecords = 0;
+            int errors = 0;
+            CharSequence line;
+            List<ValidationError> recordErrors = new ArrayList<>();
             while ((line = reader.readLine()) != null) {
-                validId = false;
                 lineNumber++;
-                String[] parts = line.split(",");
-                if (parts.length == 2) {
-                    username = parts[0];
-                    userId = parts[1].trim();
-                    result = checkUserName(username);
-                    if (!result.equals("")) {
-                        errors.add(result + " at line " + lineNumber + " in the users file.");
-                    } else {
-                        result = checkUserId(userId);
-                        if (!result.equals("")) {
-                            errors.add(result + " at line " + lineNumber + " in the users file.");
-                        } else {
-                            validId = true;
-                        }
-                    }
-                } else {
-                    errors.add("ERROR: User Formatting is wrong at line " + lineNumber + " in the users file.");
+                if (validateUserRecord(filepath, line, reader.readLine(), lineNumber, recordErrors) != 0) {
+                    invalidRecords++;
+                    errors += recordErrors.size();
                 }
-                line = reader.readLine();
                 lineNumber++;
-                // numOfValidMovies = 0;
-                if (!line.isEmpty()) {
-                    parts = line.split(",");
-                    for (String movieId : parts) {
-                        movieId = movieId.trim();
-                        if (!this.existingMovieIds.contains(movieId)) {
-                            errors.add("ERROR: Movie Id \"" + movieId + "\" at line " + lineNumber
-                                    + " is not in the movies file");
-                        }
-                        // else{
-                        //     numOfValidMovies++;
-                        // }
-                    }
+                for (ValidationError error : recordErrors) {
+                    action.accept(error);
+                }
+                recordErrors.clear();
+            }
+            commit(event, filepath, "users", lineNumber / 2, invalidRecords, errors);
+        } finally {
+            USERS_TIME.recordSince(start);
+        }
+    }
+
+    // Validates one user record ("Name, ID" at lineNumber, watched movie IDs on the
+    // next line), adds its errors and returns which of its lines were invalid. The lines
+    // are split in place, like validateMovieRecord.
+    int validateUserRecord(String file, CharSequence line, CharSequence moviesLine, int lineNumber,
+                           List<ValidationError> errors) {
+        int errorsBefore = errors.size();
+        boolean validId = false;
+        int invalid = 0;
+        int idFrom = 0, idTo = 0;
+        int comma = LineFields.indexOf(line, ',', 0, line.length());
+        int end = LineFields.fieldsEnd(line);
+        if (LineFields.hasTwoFields(line, comma, end)) {
+            // The name is checked untrimmed, so leading or trailing spaces are errors
+            idFrom = LineFields.trimStart(line, comma + 1, end);
+            idTo = LineFields.trimEnd(line, idFrom, end);
+            ValidationError.Code result = userNameProblem(line, 0, comma);
+            if (result != null) {
+                errors.add(new ValidationError(result, file, lineNumber, LineFields.text(line, 0, comma)));
+                invalid |= FIRST_LINE_INVALID;
+            } else {
+                result = userIdProblem(line, idFrom, idTo);
+                if (result != null) {
+                    errors.add(new ValidationError(result, file, lineNumber, LineFields.text(line, idFrom, idTo)));
+                    invalid |= FIRST_LINE_INVALID;
                 } else {
-                    errors.add("ERROR: User has no movies at line " + lineNumber + " in the users file.");
+                    validId = true;
                 }
-                if(validId){ // add later && numOfValidMovies > 0
-                    this.existingUserIds.add(userId);
+            }
+        } else {
+            errors.add(new ValidationError(ValidationError.Code.USER_FORMAT, file, lineNumber, null));
+            invalid |= FIRST_LINE_INVALID;
+        }
+        lineNumber++;
+        if (moviesLine.length() != 0) {
+            int moviesEnd = LineFields.fieldsEnd(moviesLine);
+            for (int start = 0; start < moviesEnd; ) {
+                int next = LineFields.indexOf(moviesLine, ',', start, moviesEnd);
+                int fieldEnd = next < 0 ? moviesEnd : next;
+                int idStart = LineFields.trimStart(moviesLine, start, fieldEnd);
+                int idEnd = LineFields.trimEnd(moviesLine, idStart, fieldEnd);
+                if (!validateWatchedMovie(file, moviesLine, idStart, idEnd, lineNumber, errors)) {
+                    invalid |= SECOND_LINE_INVALID;
                 }
-                
+                start = fieldEnd + 1;
             }
+        } else {
+            errors.add(new ValidationError(ValidationError.Code.USER_NO_MOVIES, file, lineNumber, null));
+            invalid |= SECOND_LINE_INVALID;
+        }
+        if(validId){ // add later && numOfValidMovies > 0
+            this.existingUserIds.add(line, idFrom, idTo);
+        }
+        USER_RECORDS.increment();
+        count(invalid, errors.size() - errorsBefore);
+        return invalid;
+    }
 
-            return errors;
+    // Checks one trimmed movie ID of a watch list line at lineNumber, adds its error and
+    // returns whether it is valid
+    boolean validateWatchedMovie(String file, CharSequence moviesLine, int from, int to, int lineNumber,
+                                 List<ValidationError> errors) {
+        if (this.existingMovieIds.contains(moviesLine, from, to)) {
+            return true;
+        }
+        errors.add(new ValidationError(ValidationError.Code.UNKNOWN_MOVIE, file, lineNumber,
+                LineFields.text(moviesLine, from, to)));
+        return false;
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
-            List<String> errors = new ArrayList<>();
-            errors.add("ERROR: File not found or cannot be read");
-            return errors;
+    private static void commit(FlightEvents.Validation event, String path, String kind, int records,
+                               int invalidRecords, int errors) {
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.kind = kind;
+            event.records = records;
+            event.invalidRecords = invalidRecords;
+            event.errors = errors;
+            event.commit();
         }
     }
 
+    private static void count(int invalid, int errors) {
+        if (invalid != 0) {
+            INVALID_RECORDS.increment();
+            ERRORS.add(errors);
+        }
+    }
+
+    // Turns structured errors into the messages the string-based API has always returned
+    static List<String> render(List<ValidationError> errors) {
+        List<String> messages = new ArrayList<>(errors.size());
+        for (ValidationError error : errors) {
+            messages.add(error.message());
+        }
+        return messages;
+    }
+
+    private static final Pattern ERROR_LINE = Pattern.compile("at line (\\d+)");
+
     public ArrayList<Integer> extractErrorLines(List<String> errors) {
-        Set<Integer> errorLines = new HashSet<>();
+        BitSet errorLines = new BitSet();
         for (String error : errors) {
             // Regex to find "at line {number}"
-            Matcher matcher = Pattern.compile("at line (\\d+)").matcher(error);
+            Matcher matcher = ERROR_LINE.matcher(error);
             if (matcher.find()) {
-                int lineNumber = Integer.parseInt(matcher.group(1));
-                errorLines.add(lineNumber);
-                if (lineNumber % 2 == 1) {
-                    errorLines.add(lineNumber + 1); // Add the next line number
-                }
+                markErrorLine(errorLines, Integer.parseInt(matcher.group(1)));
+            }
+        }
+        return toList(errorLines);
+    }
+
+    /**
+     * Returns the lines to skip when loading a file with the given errors: each
+     * error's line, plus the second line of a record whose first line is invalid.
+     */
+    public BitSet errorLines(List<ValidationError> errors) {
+        BitSet errorLines = new BitSet();
+        for (ValidationError error : errors) {
+            if (error.line() > 0) {
+                markErrorLine(errorLines, error.line());
             }
         }
-        return new ArrayList<>(errorLines);
+        return errorLines;
+    }
+
+    private static void markErrorLine(BitSet errorLines, int lineNumber) {
+        errorLines.set(lineNumber);
+        if (lineNumber % 2 == 1) {
+            errorLines.set(lineNumber + 1); // Add the next line number
+        }
+    }
+
+    static ArrayList<Integer> toList(BitSet lines) {
+        ArrayList<Integer> list = new ArrayList<>(lines.cardinality());
+        for (int line = lines.nextSetBit(0); line >= 0; line = lines.nextSetBit(line + 1)) {
+            list.add(line);
+        }
+        return list;
     }
 
     public Set<String> getValidMovieIds() {
@@ -4,7 +4,10 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -105,6 +108,23 @@ public class AppEndToEndTest {
         assertFalse(neosRecs.contains("The Matrix"), "Neo should not get The Matrix recommended as it was watched");
     }
 
+    @Test
+    void testApp_emptyUserId_stillGetsRecommendations() throws IOException {
+        Path moviesFile = tempDir.resolve("movies.txt");
+        Path usersFile = tempDir.resolve("users.txt");
+        Path recommendationsFile = tempDir.resolve("recommendations.txt");
+
+        createFile(tempDir, "movies.txt", List.of(
+            "The Matrix, TM001", "Action, SciFi",
+            "Inception, I002", "Action, SciFi, Thriller"
+        ));
+        createFile(tempDir, "users.txt", List.of("Alice, ", "TM001"));
+
+        ReelRecApp.start(moviesFile.toString(), usersFile.toString(), recommendationsFile.toString());
+
+        assertEquals(List.of("Alice, ", "Inception", ""), Files.readAllLines(recommendationsFile));
+    }
+
     @Test
     void testApp_movieFileMissing_outputsErrorToRecFile() throws IOException {
         Path usersFile = tempDir.resolve("users.txt");
@@ -293,4 +313,49 @@ public class AppEndToEndTest {
         ReelRecApp.start(moviesFile.toString(), usersFile.toString(), recommendationsFile.toString());
     }
 
-}
\ No newline at end of file
+    // Runs the app with System.out captured and returns the console lines
+    private List<String> consoleOf(Path moviesFile, Path usersFile, Path recommendationsFile) {
+        PrintStream out = System.out;
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(console, true, StandardCharsets.UTF_8));
+        try {
+            ReelRecApp.start(moviesFile.toString(), usersFile.toString(), recommendationsFile.toString());
+        } finally {
+            System.setOut(out);
+        }
+        return List.of(console.toString(StandardCharsets.UTF_8).split("\\R"));
+    }
+
+    // The warning sections, up to the line saying how the data was loaded
+    private static List<String> warnings(List<String> console) {
+        int end = 0;
+        while (!console.get(end).startsWith("✅")) {
+            end++;
+        }
+        return console.subList(console.indexOf("⚠️ MOVIE FILE WARNINGS ⚠️"), end);
+    }
+
+    @Test
+    void testApp_warmStart_printsTheSameWarnings() throws IOException {
+        Path moviesFile = tempDir.resolve("movies.txt");
+        Path usersFile = tempDir.resolve("users.txt");
+        Path recommendationsFile = tempDir.resolve("recommendations.txt");
+        createFile(tempDir, "movies.txt", List.of("The Matrix, TM001", "Action, SciFi", "bad title, BT002", "Drama"));
+        createFile(tempDir, "users.txt", List.of("Neo, 12345678A", "TM001", "Bad Id, BAD_ID", "TM001"));
+
+        System.setProperty(CatalogSnapshot.PATH_PROPERTY, tempDir.resolve("app.snapshot").toString());
+        try {
+            List<String> cold = consoleOf(moviesFile, usersFile, recommendationsFile);
+            List<String> warm = consoleOf(moviesFile, usersFile, recommendationsFile);
+
+            assertTrue(cold.contains("✅ Data loaded successfully!"));
+            assertTrue(warm.stream().anyMatch(line -> line.startsWith("✅ Data loaded from snapshot")));
+            List<String> warnings = warnings(cold);
+            assertEquals(2, warnings.stream().filter(line -> line.startsWith("   • ")).count());
+            assertEquals(warnings, warnings(warm));
+        } finally {
+            System.clearProperty(CatalogSnapshot.PATH_PROPERTY);
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.reelrec;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogIndexTest {
+
+    private static CatalogIndex index(Movie... movies) {
+        CatalogIndex.Builder builder = new CatalogIndex.Builder();
+        for (Movie movie : movies) {
+            builder.addGenre(builder.addMovie(movie), "Crime");
+        }
+        return builder.build();
+    }
+
+    @Test
+    // an index keeps finding its movies after later indexes remove or re-add them
+    public void testDerivedIndexesLeaveEarlierOnesAlone() {
+        Movie godfather = new Movie("TG001", "The Godfather");
+        Movie heat = new Movie("H002", "Heat");
+        CatalogIndex old = index(godfather, heat);
+
+        CatalogIndex removed = old.withoutMovie("TG001");
+        assertEquals(-1, removed.ordinalOf("TG001"));
+        assertEquals(0, old.ordinalOf("TG001"));
+        assertEquals(2, old.postingSizes[old.genreId("Crime")]);
+
+        CatalogIndex readded = removed.withMovie(new Movie("TG001", "The Godfather"), List.of("Crime"));
+        assertEquals(2, readded.ordinalOf("TG001"));
+        assertEquals(-1, removed.ordinalOf("TG001"));
+        assertEquals(0, old.ordinalOf("TG001"));
+
+        CatalogIndex removedAgain = readded.withoutMovie("TG001");
+        assertEquals(-1, removedAgain.ordinalOf("TG001"));
+        assertEquals(2, readded.ordinalOf("TG001"));
+        assertEquals(0, old.ordinalOf("TG001"));
+        assertEquals(1, removedAgain.ordinalOf("H002"));
+
+        CatalogIndex compacted = readded.compacted();
+        assertEquals(2, compacted.size());
+        assertEquals(1, compacted.ordinalOf("TG001"));
+        assertEquals(0, compacted.ordinalOf("H002"));
+    }
+
+    @Test
+    // a derived index with a 65th genre widens its masks without touching the earlier index's
+    public void testMoreThan64Genres() {
+        CatalogIndex.Builder builder = new CatalogIndex.Builder();
+        for (int i = 0; i < 64; i++) {
+            builder.addGenre(builder.addMovie(new Movie("CT" + i, "Case Test")), "Genre " + i);
+        }
+        CatalogIndex old = builder.build();
+        assertEquals(1, old.maskWords);
+
+        CatalogIndex wider = old.withMovie(new Movie("CT64", "Case Test"), List.of("Genre 63", "Genre 64"));
+        assertEquals(2, wider.maskWords);
+        assertEquals(1, old.maskWords);
+        assertEquals(65, wider.genreCount());
+        int last = 64 * wider.maskWords;
+        assertEquals(1L << 63, wider.genreMasks[last]);
+        assertEquals(1L, wider.genreMasks[last + 1]);
+        assertEquals(1L << 63, old.genreMasks[63]);
+        assertEquals(2, wider.postingSizes[wider.genreId("Genre 63")]);
+        assertEquals(1, old.postingSizes[old.genreId("Genre 63")]);
+    }
+}
@@ -0,0 +1,188 @@
+package com.reelrec;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoalescingRecommenderTest {
+
+    private RecommendationSystem recSys;
+
+    @BeforeEach
+    public void setUp() {
+        Validator validator = new Validator();
+        recSys = new RecommendationSystem();
+        recSys.loadAndValidateMoviesFromFile("src/test/resources/longermovieswithnoerrors.txt", validator);
+        recSys.loadAndValidateUsersFromFile("src/test/resources/longeruserswithnoerrors.txt", validator);
+    }
+
+    @Test
+    // requests for a user whose recommendations are being computed wait for that computation
+    public void testCoalescesIdenticalRequests() throws Exception {
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        RecommendationSystem slow = new RecommendationSystem() {
+            @Override
+            public Recommendations getRecommendations(User user) {
+                calls.incrementAndGet();
+                computing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return recSys.getRecommendations(user);
+            }
+        };
+        User user = recSys.getUsers().get(0);
+        CoalescingRecommender queries = new CoalescingRecommender();
+        CompletableFuture<List<Movie>> first = CompletableFuture.supplyAsync(
+                () -> queries.recommendations(slow, user).join());
+        assertTrue(computing.await(10, TimeUnit.SECONDS));
+
+        List<CompletableFuture<List<Movie>>> waiting = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            waiting.add(queries.recommendations(slow, user));
+        }
+        assertFalse(waiting.get(0).isDone());
+        release.countDown();
+        List<Movie> expected = recSys.recommendMoviesForUser(user);
+        assertEquals(expected, first.get(10, TimeUnit.SECONDS));
+        for (CompletableFuture<List<Movie>> result : waiting) {
+            assertEquals(expected, result.join());
+        }
+        assertEquals(1, calls.get());
+        assertEquals(6, queries.getRequestCount());
+        assertEquals(1, queries.getComputationCount());
+
+        // Once done, the next request computes again
+        queries.recommendations(slow, user).join();
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    // distinct requests within the window are computed as one batch, with the same results
+    public void testBatchesDistinctRequests() {
+        List<User> users = recSys.getUsers();
+        List<Movie> movies = new ArrayList<>(recSys.getMovieIdMap().values());
+        try (CoalescingRecommender queries = new CoalescingRecommender(10, TimeUnit.SECONDS,
+                users.size() + movies.size(), Runnable::run)) {
+            List<CompletableFuture<List<Movie>>> userResults = new ArrayList<>();
+            List<CompletableFuture<List<Movie>>> movieResults = new ArrayList<>();
+            for (int i = 0; i < Math.max(users.size(), movies.size()); i++) {
+                if (i < users.size()) {
+                    userResults.add(queries.recommendations(recSys, users.get(i)));
+                }
+                if (i < movies.size()) {
+                    movieResults.add(queries.similarMovies(recSys, movies.get(i)));
+                }
+            }
+            for (int i = 0; i < users.size(); i++) {
+                assertEquals(recSys.recommendMoviesForUser(users.get(i)), userResults.get(i).join());
+            }
+            for (int i = 0; i < movies.size(); i++) {
+                assertEquals(recSys.recommendSimilarMovies(movies.get(i)), movieResults.get(i).join());
+            }
+            assertEquals(1, queries.getBatchCount());
+            assertEquals(users.size() + movies.size(), queries.getComputationCount());
+        }
+    }
+
+    @Test
+    // a batch that does not fill up is computed when its window ends, or on close
+    public void testWindowEndsBatch() {
+        User user = recSys.getUsers().get(0);
+        try (CoalescingRecommender queries = new CoalescingRecommender(20, TimeUnit.MILLISECONDS, 64, Runnable::run)) {
+            assertEquals(recSys.recommendMoviesForUser(user), queries.recommendations(recSys, user).join());
+            assertEquals(1, queries.getBatchCount());
+        }
+        CoalescingRecommender queries = new CoalescingRecommender(1, TimeUnit.HOURS, 64, Runnable::run);
+        CompletableFuture<List<Movie>> result = queries.recommendations(recSys, user);
+        assertFalse(result.isDone());
+        queries.close();
+        assertEquals(recSys.recommendMoviesForUser(user), result.join());
+    }
+
+    @Test
+    // a failed computation fails every request waiting for it, and is not remembered
+    public void testFailure() {
+        AtomicInteger calls = new AtomicInteger();
+        RecommendationSystem failing = new RecommendationSystem() {
+            @Override
+            public List<Movie> recommendSimilarMovies(Movie movie) {
+                if (calls.incrementAndGet() == 1) {
+                    throw new IllegalStateException("Catalog unavailable");
+                }
+                return List.of();
+            }
+        };
+        Movie movie = new Movie("TG002", "The Godfather");
+        CoalescingRecommender queries = new CoalescingRecommender();
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> queries.similarMovies(failing, movie).join());
+        assertEquals("Catalog unavailable", e.getCause().getMessage());
+        assertEquals(List.of(), queries.similarMovies(failing, movie).join());
+    }
+
+    @Test
+    // an Error or a rejected batch fails the request without leaving it in flight
+    public void testErrorAndRejection() {
+        AtomicInteger calls = new AtomicInteger();
+        RecommendationSystem failing = new RecommendationSystem() {
+            @Override
+            public List<Movie> recommendSimilarMovies(Movie movie) {
+                if (calls.incrementAndGet() == 1) {
+                    throw new AssertionError("Broken movie");
+                }
+                return List.of();
+            }
+        };
+        Movie movie = new Movie("TG002", "The Godfather");
+        CoalescingRecommender queries = new CoalescingRecommender();
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> queries.similarMovies(failing, movie).join());
+        assertEquals("Broken movie", e.getCause().getMessage());
+        assertEquals(List.of(), queries.similarMovies(failing, movie).join());
+
+        CoalescingRecommender rejecting = new CoalescingRecommender(1, TimeUnit.HOURS, 1, task -> {
+            throw new RejectedExecutionException("Pool is shut down");
+        });
+        e = assertThrows(CompletionException.class, () -> rejecting.similarMovies(recSys, movie).join());
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        e = assertThrows(CompletionException.class, () -> rejecting.similarMovies(recSys, movie).join());
+        assertInstanceOf(RejectedExecutionException.class, e.getCause()); // Tried again, not stuck
+        rejecting.close();
+    }
+
+    @Test
+    // requests after close fail, with or without a window
+    public void testClosed() {
+        User user = recSys.getUsers().get(0);
+        for (CoalescingRecommender queries : List.of(new CoalescingRecommender(),
+                new CoalescingRecommender(1, TimeUnit.HOURS, 64, Runnable::run))) {
+            queries.close();
+            CompletionException e = assertThrows(CompletionException.class,
+                    () -> queries.recommendations(recSys, user).join());
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+        }
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CoalescingRecommender(-1, TimeUnit.MILLISECONDS, 64, Runnable::run));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CoalescingRecommender(1, TimeUnit.MILLISECONDS, 0, Runnable::run));
+    }
+}
@@ -0,0 +1,82 @@
+package com.reelrec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactRecommendationWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    // Writes the same records as text and compact, and returns the decoded compact file
+    private String roundTrip(List<User> users, List<List<Movie>> recommendations, Path text) throws IOException {
+        Path compact = tempDir.resolve("recommendations.bin");
+        try (RecommendationWriter textWriter = new RecommendationWriter(text.toString(), false);
+             RecommendationOutput compactWriter = new CompactRecommendationWriter(compact.toString())) {
+            for (int i = 0; i < users.size(); i++) {
+                textWriter.write(users.get(i), recommendations.get(i));
+                compactWriter.write(users.get(i), recommendations.get(i));
+            }
+        }
+        assertTrue(Files.size(compact) < Files.size(text));
+
+        Path decoded = tempDir.resolve("decoded.txt");
+        try (CompactRecommendationReader reader = new CompactRecommendationReader(compact.toString());
+             RecommendationWriter writer = new RecommendationWriter(decoded.toString(), false)) {
+            assertEquals(users.size(), reader.decodeTo(writer));
+        }
+        return Files.readString(decoded);
+    }
+
+    @Test
+    // decoding gives the text layout back, for errors, empty lists and many movies
+    public void testRoundTripMatchesText() throws IOException {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            movies.add(new Movie("TSR" + i, "The Shawshank Redemption Part " + i));
+        }
+        movies.add(new Movie("AM001", "Amélie"));
+        List<User> users = new ArrayList<>();
+        List<List<Movie>> recommendations = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            users.add(new User("User " + i, String.format("%08dA", i)));
+            recommendations.add(movies.subList(i * 6, movies.size()));
+        }
+        User failed = new User("Agent Smith", "BAD_ID");
+        failed.setErrorMessage("ERROR: User Id \"BAD_ID\" is wrong at line 3 in the users file.");
+        users.add(failed);
+        recommendations.add(new ArrayList<>());
+
+        Path text = tempDir.resolve("recommendations.txt");
+        String decoded = roundTrip(users, recommendations, text);
+        assertEquals(Files.readString(text), decoded);
+    }
+
+    @Test
+    // the recommendations of a real run decode to the text the system writes
+    public void testRoundTripOfLoadedUsers() throws IOException {
+        Validator validator = new Validator();
+        RecommendationSystem recSys = new RecommendationSystem();
+        recSys.loadAndValidateMoviesFromFile("src/test/resources/Longermovieswitherrors.txt", validator);
+        recSys.loadAndValidateUsersFromFile("src/test/resources/longeruserswitherrors.txt", validator);
+        List<User> users = recSys.getUsers();
+        Path text = tempDir.resolve("loaded.txt");
+        String decoded = roundTrip(users, recSys.recommendMoviesForUsers(users), text);
+        assertEquals(Files.readString(text), decoded);
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws IOException {
+        Path text = tempDir.resolve("plain.txt");
+        Files.writeString(text, "Neo, 12345678A\nThe Matrix\n\n");
+        assertThrows(IOException.class, () -> new CompactRecommendationReader(text.toString()));
+    }
+}
@@ -0,0 +1,86 @@
+package com.reelrec;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightEventsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> found = new ArrayList<>();
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                found.add(event);
+            }
+        }
+        return found;
+    }
+
+    @Test
+    public void testProcessorRunEmitsEvents() throws Exception {
+        String movies = "src/test/resources/longermovieswithnoerrors.txt";
+        String users = "src/test/resources/longeruserswithnoerrors.txt";
+        Path output = tempDir.resolve("recommendations.txt");
+        Path dump = tempDir.resolve("run.jfr");
+
+        try (Recording recording = new Recording()) {
+            for (String event : new String[] {"CatalogLoad", "UserLoad", "Recommendation", "Validation",
+                    "OutputFlush", "Phase"}) {
+                recording.enable("com.reelrec." + event).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            new ReelRecProcessor(movies, users, output.toString(), new Validator(), new RecommendationSystem()).execute();
+            recording.stop();
+            recording.dump(dump);
+        }
+        // Events of different threads are not written in order
+        List<RecordedEvent> events = new ArrayList<>(RecordingFile.readAllEvents(dump));
+        events.sort(Comparator.comparing(RecordedEvent::getStartTime));
+
+        List<RecordedEvent> validations = named(events, "com.reelrec.Validation");
+        assertEquals(2, validations.size());
+        assertEquals("movies", validations.get(0).getString("kind"));
+        assertEquals(10, validations.get(0).getInt("records"));
+        assertEquals("users", validations.get(1).getString("kind"));
+        assertEquals(8, validations.get(1).getInt("records"));
+        assertEquals(0, validations.get(1).getInt("errors"));
+
+        RecordedEvent catalogLoad = named(events, "com.reelrec.CatalogLoad").get(0);
+        assertEquals(movies, catalogLoad.getString("path"));
+        assertEquals(10, catalogLoad.getInt("movies"));
+        assertEquals(10, catalogLoad.getInt("catalogSize"));
+        assertEquals(8, named(events, "com.reelrec.UserLoad").get(0).getInt("users"));
+
+        List<RecordedEvent> recommendations = named(events, "com.reelrec.Recommendation");
+        assertEquals(8, recommendations.size());
+        for (RecordedEvent recommendation : recommendations) {
+            assertNotNull(recommendation.getString("userId"));
+            assertTrue(recommendation.getLong("candidates") >= recommendation.getInt("results"));
+        }
+
+        int flushed = 0;
+        for (RecordedEvent flush : named(events, "com.reelrec.OutputFlush")) {
+            flushed += flush.getInt("records");
+        }
+        assertEquals(8, flushed);
+
+        List<String> phases = new ArrayList<>();
+        for (RecordedEvent phase : named(events, "com.reelrec.Phase")) {
+            phases.add(phase.getString("phase") + "/" + phase.getString("mode"));
+        }
+        assertEquals(List.of("validate/full", "load/full", "output/full"), phases);
+    }
+}
@@ -0,0 +1,82 @@
+package com.reelrec;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalRecommendationsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private RecommendationSystem recSys;
+    private List<User> users;
+    private String output;
+    private final byte[] catalogHash = {1, 2, 3};
+
+    @BeforeEach
+    public void setUp() {
+        Validator validator = new Validator();
+        recSys = new RecommendationSystem();
+        recSys.loadAndValidateMoviesFromFile("src/test/resources/Longermovieswitherrors.txt", validator);
+        recSys.loadAndValidateUsersFromFile("src/test/resources/longeruserswitherrors.txt", validator);
+        users = recSys.getUsers();
+        output = tempDir.resolve("recommendations.txt").toString();
+    }
+
+    // Runs like the processor does: keep the last output, clear it, write incrementally
+    private int run(List<User> users, byte[] catalogHash) throws IOException {
+        IncrementalRecommendations.keepPrevious(output);
+        Files.writeString(Path.of(output), "");
+        return IncrementalRecommendations.write(recSys, users, output, catalogHash);
+    }
+
+    private String fullOutput(List<User> users) throws IOException {
+        Path full = tempDir.resolve("full.txt");
+        try (RecommendationWriter writer = new RecommendationWriter(full.toString(), false)) {
+            List<List<Movie>> recommendations = recSys.recommendMoviesForUsers(users);
+            for (int i = 0; i < users.size(); i++) {
+                writer.write(users.get(i), recommendations.get(i));
+            }
+        }
+        return Files.readString(full);
+    }
+
+    @Test
+    // only users whose records change are recomputed, and the output is still complete
+    public void testRecomputesChangedUsersOnly() throws IOException {
+        assertEquals(users.size(), run(users, catalogHash));
+        assertEquals(0, run(users, catalogHash));
+        assertEquals(fullOutput(users), Files.readString(Path.of(output)));
+        assertFalse(Files.exists(Path.of(IncrementalRecommendations.previousPath(output))));
+
+        List<User> changed = new ArrayList<>(users);
+        User renamed = new User("Renamed User", users.get(1).getId(), users.get(1).getWatchList());
+        changed.set(1, renamed);
+        changed.remove(3);
+        assertEquals(1, run(changed, catalogHash));
+        assertEquals(fullOutput(changed), Files.readString(Path.of(output)));
+    }
+
+    @Test
+    // a new catalog or an output the manifest does not describe recomputes everyone
+    public void testRecomputesAllWhenStale() throws IOException {
+        run(users, catalogHash);
+        assertEquals(users.size(), run(users, new byte[] {4, 5, 6}));
+
+        Files.writeString(Path.of(output), "edited\n", java.nio.file.StandardOpenOption.APPEND);
+        assertEquals(users.size(), run(users, new byte[] {4, 5, 6}));
+        assertEquals(fullOutput(users), Files.readString(Path.of(output)));
+
+        Files.delete(Path.of(IncrementalRecommendations.manifestPath(output)));
+        assertEquals(users.size(), run(users, new byte[] {4, 5, 6}));
+    }
+}
@@ -144,4 +144,123 @@ public class IntegrationTest {
          assertNotNull(passedGoodUser);
          assertNull(passedGoodUser.getErrorMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testProcessorExecute_streamingMatchesLoadingAllUsers() throws IOException {
+        // --- Arrange --- more users than one streaming window, with repeated IDs
+        Path movies = Path.of("src/test/resources/Longermovieswitherrors.txt");
+        String records = Files.readString(Path.of("src/test/resources/longeruserswitherrors.txt"));
+        StringBuilder users = new StringBuilder();
+        while (users.length() < 200 * records.length()) {
+            users.append(records).append('\n');
+        }
+        Files.writeString(usersFile, users);
+        Path loadedOutput = tempDir.resolve("loaded.txt");
+        Path streamedOutput = tempDir.resolve("streamed.txt");
+
+        // --- Act ---
+        new ReelRecProcessor(movies.toString(), usersFile.toString(), loadedOutput.toString(),
+                new Validator(), new RecommendationSystem()).execute();
+        RecommendationSystem streamingRecSys = new RecommendationSystem();
+        new ReelRecProcessor(movies.toString(), usersFile.toString(), streamedOutput.toString(),
+                new Validator(), streamingRecSys, true).execute();
+
+        // --- Assert ---
+        List<String> loaded = Files.readAllLines(loadedOutput);
+        assertTrue(loaded.size() > 4 * ReelRecProcessor.STREAMING_WINDOW);
+        assertEquals(loaded, Files.readAllLines(streamedOutput));
+        assertTrue(streamingRecSys.getUsers().isEmpty()); // Nothing was kept
+    }
+
+    @Test
+    void testProcessorExecute_shardedOutputMatchesSingleFile() throws IOException {
+        // --- Arrange ---
+        String movies = "src/test/resources/Longermovieswitherrors.txt";
+        String users = "src/test/resources/longeruserswitherrors.txt";
+        Path singleOutput = tempDir.resolve("single.txt");
+        Path mergedOutput = tempDir.resolve("merged.txt");
+        Path shardedOutput = tempDir.resolve("sharded.txt");
+
+        // --- Act ---
+        new ReelRecProcessor(movies, users, singleOutput.toString(),
+                new Validator(), new RecommendationSystem()).execute();
+        new ReelRecProcessor(movies, users, mergedOutput.toString(),
+                new Validator(), new RecommendationSystem(), false, 3, true).execute();
+        new ReelRecProcessor(movies, users, shardedOutput.toString(),
+                new Validator(), new RecommendationSystem(), false, 3, false).execute();
+
+        // --- Assert ---
+        String expected = Files.readString(singleOutput);
+        assertEquals(expected, Files.readString(mergedOutput));
+        StringBuilder shards = new StringBuilder();
+        for (String shard : RecommendationShards.shardPaths(mergedOutput.toString(), 3)) {
+            assertFalse(Files.exists(Path.of(shard))); // Removed after merging
+        }
+        for (String shard : RecommendationShards.shardPaths(shardedOutput.toString(), 3)) {
+            shards.append(Files.readString(Path.of(shard)));
+        }
+        assertEquals(expected, shards.toString());
+        assertEquals("", Files.readString(shardedOutput));
+        assertThrows(IllegalArgumentException.class, () -> new ReelRecProcessor(movies, users, shardedOutput.toString(),
+                new Validator(), new RecommendationSystem(), true, 3, true));
+    }
+
+    @Test
+    void testProcessorExecute_incrementalRunsMatchFullRuns() throws IOException {
+        // --- Arrange ---
+        String movies = "src/test/resources/Longermovieswitherrors.txt";
+        List<String> lines = new ArrayList<>(Files.readAllLines(Path.of("src/test/resources/longeruserswithnoerrors.txt")));
+        Files.write(usersFile, lines);
+        Path fullOutput = tempDir.resolve("full.txt");
+        Path incrementalOutput = tempDir.resolve("incremental.txt");
+        ReelRecProcessor.Options incremental = new ReelRecProcessor.Options().incremental(true);
+
+        for (int day = 0; day < 3; day++) {
+            if (day == 1) {
+                lines.set(1, lines.get(3)); // The first user watched something else
+            } else if (day == 2) {
+                lines.add(2, lines.get(0).replace(",", "x,"));  // A user was inserted
+                lines.add(3, lines.get(1));
+            }
+            Files.write(usersFile, lines);
+
+            // --- Act ---
+            new ReelRecProcessor(movies, usersFile.toString(), fullOutput.toString(),
+                    new Validator(), new RecommendationSystem()).execute();
+            new ReelRecProcessor(movies, usersFile.toString(), incrementalOutput.toString(),
+                    new Validator(), new RecommendationSystem(), incremental).execute();
+
+            // --- Assert ---
+            assertEquals(Files.readString(fullOutput), Files.readString(incrementalOutput), "day " + day);
+            assertTrue(Files.exists(Path.of(IncrementalRecommendations.manifestPath(incrementalOutput.toString()))));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ReelRecProcessor(movies, usersFile.toString(),
+                incrementalOutput.toString(), new Validator(), new RecommendationSystem(),
+                new ReelRecProcessor.Options().incremental(true).streaming(true)));
+    }
+
+    @Test
+    void testProcessorExecute_writesMetricsSummary() throws IOException {
+        // --- Arrange ---
+        String movies = "src/test/resources/longermovieswithnoerrors.txt";
+        String users = "src/test/resources/longeruserswithnoerrors.txt";
+        int movieRecords = Files.readAllLines(Path.of(movies)).size() / 2;
+        int userRecords = Files.readAllLines(Path.of(users)).size() / 2;
+        Path summary = tempDir.resolve("metrics.json");
+
+        // --- Act ---
+        new ReelRecProcessor(movies, users, recommendationsFile.toString(), new Validator(), new RecommendationSystem(),
+                new ReelRecProcessor.Options().metricsSummary(summary.toString())).execute();
+
+        // --- Assert --- Only this run is counted, not the earlier ones in this JVM
+        String json = Files.readString(summary).trim();
+        assertTrue(json.matches(".*\"validate.movieRecords\":" + movieRecords + "[,}].*"), json);
+        assertTrue(json.matches(".*\"validate.userRecords\":" + userRecords + "[,}].*"), json);
+        assertTrue(json.matches(".*\"validate.invalidRecords\":0[,}].*"), json);
+        assertTrue(json.matches(".*\"load.moviesLoaded\":" + movieRecords + "[,}].*"), json);
+        assertTrue(json.matches(".*\"load.usersLoaded\":" + userRecords + "[,}].*"), json);
+        assertTrue(json.contains("\"recommend\":{\"unit\":\"ns\",\"count\":" + userRecords + ","), json);
+        assertTrue(json.contains("\"write\":{\"unit\":\"ns\",\"count\":" + userRecords + ","), json);
+        assertTrue(json.contains("\"phase.run\":{\"unit\":\"ns\",\"count\":1,"), json);
+    }
+}
@@ -0,0 +1,109 @@
+package com.reelrec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedLineReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    // Reads every line with both readers and checks they agree
+    private List<String> assertSameLines(String content) throws IOException {
+        Path file = tempDir.resolve("lines.txt");
+        Files.write(file, content.getBytes(Charset.defaultCharset()));
+
+        List<String> expected = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                expected.add(line);
+            }
+        }
+        List<String> actual = readAll(new MappedLineReader(file.toString()));
+        assertEquals(expected, actual);
+        assertEquals(expected, readAll(new MappedLineReader(file.toString(), 0, Long.MAX_VALUE, false)));
+        return actual;
+    }
+
+    private static List<String> readAll(MappedLineReader reader) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (reader) {
+            CharSequence line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line.toString());
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    public void testLineBreaks() throws IOException {
+        assertEquals(List.of("a", "b", "", "c"), assertSameLines("a\nb\r\n\rc"));
+        assertEquals(List.of("a", ""), assertSameLines("a\r\r\n"));
+        assertEquals(List.of("last line"), assertSameLines("last line"));
+        assertEquals(List.of(), assertSameLines(""));
+    }
+
+    @Test
+    public void testNonAsciiLine() throws IOException {
+        // Decoded with the platform charset, like FileReader
+        assertEquals(2, assertSameLines("Amélie, A001\nDrama\n").size());
+    }
+
+    @Test
+    public void testPreviousLineStaysReadable() throws IOException {
+        Path file = tempDir.resolve("pairs.txt");
+        Files.write(file, "Name, 12345678A\nTDK001, UP002\n".getBytes(Charset.defaultCharset()));
+        try (MappedLineReader reader = new MappedLineReader(file.toString())) {
+            CharSequence first = reader.readLine();
+            CharSequence second = reader.readLine();
+            assertEquals("Name, 12345678A", first.toString());
+            assertEquals("TDK001, UP002", second.toString());
+            assertNull(reader.readLine());
+        }
+    }
+
+    @Test
+    // unmapped, a line longer than the read buffer grows it
+    public void testLongLineUnmapped() throws IOException {
+        String longLine = "A".repeat(200_000);
+        assertEquals(List.of("first", longLine, "last"), assertSameLines("first\n" + longLine + "\nlast\n"));
+    }
+
+    @Test
+    // unmapped, a file truncated while it is read throws instead of crashing
+    public void testTruncatedUnmapped() throws IOException {
+        Path file = tempDir.resolve("truncated.txt");
+        Files.write(file, "line\n".repeat(100_000).getBytes(Charset.defaultCharset()));
+        try (MappedLineReader reader = new MappedLineReader(file.toString(), 0, Long.MAX_VALUE, false)) {
+            assertEquals("line", reader.readLine().toString());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(1000);
+            }
+            assertThrows(IOException.class, () -> {
+                while (reader.readLine() != null) {
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testMissingFile() {
+        assertThrows(IOException.class, () -> new MappedLineReader(tempDir.resolve("missing.txt").toString()));
+        assertThrows(IOException.class, () -> new MappedLineReader(tempDir.toString()));
+    }
+}
@@ -0,0 +1,71 @@
+package com.reelrec;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void testHistogramBucketsAndPercentiles() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        MetricsRegistry.Histogram sizes = metrics.histogram("sizes", "", new long[] {1, 10, 100});
+        for (long value : new long[] {0, 1, 5, 10, 50, 50, 100, 1000}) {
+            sizes.record(value);
+        }
+        MetricsRegistry.HistogramSnapshot snapshot = metrics.snapshot().histograms().get("sizes");
+        assertArrayEquals(new long[] {2, 2, 3, 1}, snapshot.buckets());
+        assertEquals(8, snapshot.count());
+        assertEquals(1216, snapshot.sum());
+        assertEquals(10, snapshot.percentile(0.5));
+        assertEquals(100, snapshot.percentile(0.8));
+        assertEquals(100, snapshot.percentile(0.99)); // Above the last bound
+        assertEquals(0, new MetricsRegistry().timer("empty").snapshot().percentile(0.5));
+    }
+
+    @Test
+    public void testSnapshotSinceAndJson() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("records").add(5);
+        metrics.timer("load").record(1_500);
+        MetricsRegistry.Snapshot start = metrics.snapshot();
+        metrics.counter("records").add(3);
+        metrics.counter("errors").increment();
+        metrics.timer("load").record(2_500_000);
+
+        MetricsRegistry.Snapshot run = metrics.snapshot().since(start);
+        assertEquals(3, run.counters().get("records"));
+        assertEquals(1, run.counters().get("errors"));
+        assertEquals(1, run.histograms().get("load").count());
+        assertEquals(5_000_000, run.histograms().get("load").percentile(0.5));
+        String json = run.toJson();
+        assertTrue(json.startsWith("{\"counters\":{\"errors\":1,\"records\":3},\"histograms\":{\"load\":"
+                + "{\"unit\":\"ns\",\"count\":1,\"sum\":2500000,\"p50\":5000000,"), json);
+        assertEquals(MetricsRegistry.TIME_BOUNDS.length + 1, run.histograms().get("load").buckets().length);
+    }
+
+    @Test
+    public void testMBeanExposesGlobalMetrics() throws Exception {
+        MetricsRegistry.global().counter("test.mbean").add(7);
+        MetricsRegistry.global().timer("test.mbeanTimer").record(3_000);
+        MetricsRegistry.registerMBean();
+        MetricsRegistry.registerMBean(); // Once only
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(MetricsRegistry.OBJECT_NAME);
+        assertTrue((Long) server.getAttribute(name, "test.mbean") >= 7);
+        assertTrue((Long) server.getAttribute(name, "test.mbeanTimer.count") >= 1);
+        assertEquals(5_000L, server.getAttribute(name, "test.mbeanTimer.p50"));
+        boolean listed = false;
+        for (var attribute : server.getMBeanInfo(name).getAttributes()) {
+            listed |= attribute.getName().equals("test.mbeanTimer.p99");
+        }
+        assertTrue(listed);
+        assertThrows(ReflectionException.class, () -> server.invoke(name, "reset", null, null));
+    }
+}
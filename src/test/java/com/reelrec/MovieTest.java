@@ -168,6 +168,33 @@ public class MovieTest {
         assertTrue(movie1.compareTo(movie2) < 0, "Lexicographic comparison: 'm9' should be less than 'm10'");
     }
     
+    @Test
+    public void testCompareToAfterSetID() {
+        Movie movie1 = new Movie("TM007", "The Matrix");
+        Movie movie2 = new Movie("TM010", "The Mummy");
+        assertTrue(movie1.compareTo(movie2) < 0, "TM007 should be less than TM010");
+        
+        // The sort key has to follow the new ID
+        movie1.setID("TM012");
+        assertTrue(movie1.compareTo(movie2) > 0, "TM012 should be greater than TM010");
+        movie1.setID("AB999");
+        assertTrue(movie1.compareTo(movie2) < 0, "Prefix AB should come before TM");
+    }
+    
+    @Test
+    public void testCompareToNonNumericIDs() {
+        Movie movie1 = new Movie("abc", "Movie A");
+        Movie movie2 = new Movie("abc1", "Movie B");
+        Movie movie3 = new Movie("a1b2", "Movie C");
+        Movie movie4 = new Movie("ab12", "Movie D");
+        
+        // Without a number on one side the digit strings are compared as text
+        assertTrue(movie1.compareTo(movie2) < 0, "'' should be less than '1'");
+        assertTrue(movie2.compareTo(movie1) > 0, "'1' should be greater than ''");
+        // Digits are taken from anywhere in the ID
+        assertEquals(0, movie3.compareTo(movie4), "a1b2 and ab12 share letters 'ab' and number 12");
+    }
+    
     @Test
     public void testEqualsContractProperties() {
         Movie movie1 = new Movie("m001", "Movie A");
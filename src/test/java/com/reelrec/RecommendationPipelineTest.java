@@ -0,0 +1,172 @@
+package com.reelrec;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecommendationPipelineTest {
+
+    private ExecutorService pool;
+    private Executor jittery; // Finishes users out of order
+
+    @BeforeEach
+    public void setUp() {
+        pool = Executors.newFixedThreadPool(4);
+        Random random = new Random(42);
+        jittery = task -> {
+            long delay = random.nextInt(500);
+            pool.execute(() -> {
+                try {
+                    TimeUnit.MICROSECONDS.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                task.run();
+            });
+        };
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private static List<User> users(int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(new User("User " + i, String.valueOf(i)));
+        }
+        return users;
+    }
+
+    @Test
+    // users are written in submission order, with at most capacity of them in flight
+    public void testWritesInOrderWithinCapacity() throws IOException {
+        int capacity = 8;
+        List<User> users = users(2000);
+        List<User> written = new ArrayList<>();
+        AtomicInteger submitted = new AtomicInteger();
+        RecommendationPipeline pipeline = new RecommendationPipeline(new RecommendationSystem(), jittery, capacity,
+                (user, recommendations) -> {
+                    assertTrue(submitted.get() - written.size() <= capacity);
+                    written.add(user);
+                });
+        for (User user : users) {
+            pipeline.submit(user);
+            submitted.incrementAndGet();
+        }
+        assertEquals(users.size(), pipeline.finish());
+        assertEquals(users, written);
+    }
+
+    @Test
+    public void testNothingSubmitted() throws IOException {
+        RecommendationPipeline pipeline = new RecommendationPipeline(new RecommendationSystem(), pool, 4,
+                (user, recommendations) -> fail("Nothing to write"));
+        assertEquals(0, pipeline.finish());
+    }
+
+    @Test
+    // a failing write stops writing, but submitting does not block and finish reports it
+    public void testWriteFailure() {
+        List<User> written = new ArrayList<>();
+        RecommendationPipeline pipeline = new RecommendationPipeline(new RecommendationSystem(), jittery, 4,
+                (user, recommendations) -> {
+                    if (written.size() == 3) {
+                        throw new IOException("Disk full");
+                    }
+                    written.add(user);
+                });
+        List<User> users = users(100);
+        for (User user : users) {
+            pipeline.submit(user);
+        }
+        IOException e = assertThrows(IOException.class, pipeline::finish);
+        assertEquals("Disk full", e.getMessage());
+        assertEquals(users.subList(0, 3), written);
+    }
+
+    @Test
+    // a null user is written like any other, and does not end the pipeline early
+    public void testNullUser() throws IOException {
+        List<User> written = new ArrayList<>();
+        RecommendationPipeline pipeline = new RecommendationPipeline(new RecommendationSystem(), pool, 1,
+                (user, recommendations) -> {
+                    assertTrue(recommendations.isEmpty());
+                    written.add(user);
+                });
+        List<User> users = new ArrayList<>();
+        users.add(null);
+        users.addAll(users(3));
+        for (User user : users) {
+            pipeline.submit(user);
+        }
+        assertEquals(users.size(), pipeline.finish());
+        assertEquals(users, written);
+    }
+
+    @Test
+    // an Error while computing recommendations is reported by finish instead of hanging it
+    public void testComputeError() {
+        RecommendationSystem failing = new RecommendationSystem() {
+            @Override
+            public Recommendations getRecommendations(User user) {
+                if (user.getId().equals("2")) {
+                    throw new AssertionError("Broken user");
+                }
+                return super.getRecommendations(user);
+            }
+        };
+        List<User> written = new ArrayList<>();
+        RecommendationPipeline pipeline = new RecommendationPipeline(failing, jittery, 4,
+                (user, recommendations) -> written.add(user));
+        List<User> users = users(100);
+        for (User user : users) {
+            pipeline.submit(user);
+        }
+        AssertionError e = assertThrows(AssertionError.class, pipeline::finish);
+        assertEquals("Broken user", e.getMessage());
+        assertEquals(users.subList(0, 2), written);
+    }
+
+    @Test
+    // a user the executor rejects is reported by finish instead of hanging it
+    public void testRejectedUser() {
+        AtomicInteger executed = new AtomicInteger();
+        Executor rejecting = task -> {
+            if (executed.incrementAndGet() > 3) {
+                throw new RejectedExecutionException("Pool is shut down");
+            }
+            pool.execute(task);
+        };
+        List<User> written = new ArrayList<>();
+        RecommendationPipeline pipeline = new RecommendationPipeline(new RecommendationSystem(), rejecting, 2,
+                (user, recommendations) -> written.add(user));
+        List<User> users = users(10);
+        for (User user : users) {
+            pipeline.submit(user);
+        }
+        RejectedExecutionException e = assertThrows(RejectedExecutionException.class, pipeline::finish);
+        assertEquals("Pool is shut down", e.getMessage());
+        assertEquals(users.subList(0, 3), written);
+    }
+
+    @Test
+    public void testInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new RecommendationPipeline(new RecommendationSystem(), pool, 0, (user, recommendations) -> { }));
+    }
+}
@@ -0,0 +1,102 @@
+package com.reelrec;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecommendationReloaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path moviesFile;
+    private Path usersFile;
+    private List<String> userLines;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        moviesFile = Files.copy(Path.of("src/test/resources/Longermovieswitherrors.txt"), tempDir.resolve("movies.txt"));
+        usersFile = Files.copy(Path.of("src/test/resources/longeruserswitherrors.txt"), tempDir.resolve("users.txt"));
+        userLines = new ArrayList<>(Files.readAllLines(usersFile));
+    }
+
+    private static void await(RecommendationReloader reloader, long reloads) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (reloader.getReloadCount() < reloads && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        assertEquals(reloads, reloader.getReloadCount());
+    }
+
+    @Test
+    // editing a watched file swaps in a new RecommendationSystem and leaves the old one as it was
+    public void testReloadsWhenUsersFileChanges() throws Exception {
+        try (RecommendationReloader reloader = new RecommendationReloader(moviesFile.toString(), usersFile.toString())) {
+            reloader.start();
+            RecommendationSystem before = reloader.current();
+            int usersBefore = before.getUsers().size();
+            assertEquals(1, reloader.getReloadCount());
+
+            Files.write(usersFile, userLines.subList(0, 2));
+            await(reloader, 2);
+
+            RecommendationSystem after = reloader.current();
+            assertNotSame(before, after);
+            assertEquals(1, after.getUsers().size());
+            assertEquals(usersBefore, before.getUsers().size());
+            assertNull(reloader.getLastFailure());
+            assertTrue(reloader.getLastReloadNanos() > 0);
+        }
+    }
+
+    @Test
+    // a reload that fails keeps the last good RecommendationSystem and reports why
+    public void testFailedReloadKeepsCurrent() throws Exception {
+        List<Exception> failures = new ArrayList<>();
+        RecommendationReloader reloader = new RecommendationReloader(moviesFile.toString(), usersFile.toString(),
+                new RecommendationReloader.Listener() {
+                    @Override
+                    public void failed(Exception e, long nanos) {
+                        failures.add(e);
+                    }
+                });
+        assertTrue(reloader.reload());
+        RecommendationSystem loaded = reloader.current();
+
+        Files.delete(usersFile);
+        assertFalse(reloader.reload());
+        assertSame(loaded, reloader.current());
+        assertEquals(1, reloader.getReloadCount());
+        assertEquals(ValidationError.unreadable(usersFile.toString()).message(), reloader.getLastFailure().getMessage());
+        assertEquals(List.of(reloader.getLastFailure()), failures);
+
+        Files.write(usersFile, userLines);
+        assertTrue(reloader.reload());
+        assertNull(reloader.getLastFailure());
+    }
+
+    @Test
+    // the first load has nothing to fall back on, so start fails
+    public void testStartFailsWithoutFiles() {
+        RecommendationReloader reloader = new RecommendationReloader(
+                tempDir.resolve("missing.txt").toString(), usersFile.toString());
+        assertThrows(IOException.class, reloader::start);
+        assertNull(reloader.current());
+    }
+
+    @Test
+    // the reloaded users get their ID errors applied, like a normal run
+    public void testLoadAppliesUserIdErrors() throws IOException {
+        RecommendationSystem recSys = RecommendationReloader.load(moviesFile.toString(), usersFile.toString());
+        assertTrue(recSys.getUsers().stream().anyMatch(user -> user.getErrorMessage() != null));
+    }
+}
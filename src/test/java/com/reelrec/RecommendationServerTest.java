@@ -0,0 +1,187 @@
+package com.reelrec;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecommendationServerTest {
+
+    private RecommendationSystem recSys;
+    private ExecutorService requests;
+    private RecommendationServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Validator validator = new Validator();
+        recSys = new RecommendationSystem();
+        recSys.loadAndValidateMoviesFromFile("src/test/resources/longermovieswithnoerrors.txt", validator);
+        recSys.loadAndValidateUsersFromFile("src/test/resources/longeruserswithnoerrors.txt", validator);
+        requests = RecommendationServer.newRequestExecutor();
+        server = new RecommendationServer(() -> recSys, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                requests);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.close();
+        requests.shutdownNow();
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String json(List<Movie> movies) {
+        StringBuilder json = new StringBuilder("[");
+        for (Movie movie : movies) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append("{\"id\":");
+            RecommendationServer.string(json, movie.getID());
+            json.append(",\"title\":");
+            RecommendationServer.string(json, movie.getName());
+            json.append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    @Test
+    public void testUserRecommendations() throws Exception {
+        User user = recSys.getUsers().get(0);
+        HttpResponse<String> response = get("/users/" + user.getId() + "/recommendations");
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"user\":{\"id\":\"" + user.getId() + "\",\"name\":\"" + user.getName() + "\"},\"error\":null,"
+                + "\"recommendations\":" + json(recSys.recommendMoviesForUser(user)) + "}", response.body());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/json"));
+    }
+
+    @Test
+    public void testSimilarMovies() throws Exception {
+        Movie movie = recSys.getMovieById("TG002");
+        HttpResponse<String> response = get("/movies/TG002/similar");
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"movie\":{\"id\":\"TG002\",\"title\":\"The Godfather\"},\"similar\":"
+                + json(recSys.recommendSimilarMovies(movie)) + "}", response.body());
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        assertEquals(404, get("/users/00000000Z/recommendations").statusCode());
+        assertEquals(404, get("/movies/NOPE999/similar").statusCode());
+        assertEquals(404, get("/movies/TG002").statusCode());
+        assertEquals(404, get("/").statusCode());
+        HttpRequest post = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/movies/TG002/similar"))
+                .POST(HttpRequest.BodyPublishers.noBody()).build();
+        assertEquals(405, client.send(post, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    // a '+' in an ID is a plus, not a space, whether it is escaped or not
+    public void testPlusInId() throws Exception {
+        recSys.addUser("Plus User", "1234567+", List.of(), new Validator());
+        HttpResponse<String> response = get("/users/1234567+/recommendations");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().startsWith("{\"user\":{\"id\":\"1234567+\""));
+        assertEquals(200, get("/users/1234567%2B/recommendations").statusCode());
+        assertEquals("A+B \u00e9", RecommendationServer.decode("A+B%20%C3%A9"));
+    }
+
+    @Test
+    // HttpClient refuses to send a malformed escape, so this goes over a plain socket
+    public void testMalformedEscape() throws Exception {
+        for (String path : List.of("/users/%zz/recommendations", "/movies/TG00%2/similar")) {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                socket.getOutputStream().write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n"
+                        + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                assertEquals("HTTP/1.1 400 Bad Request", in.readLine());
+            }
+        }
+    }
+
+    @Test
+    public void testJsonStrings() {
+        StringBuilder json = new StringBuilder();
+        RecommendationServer.string(json, "Say \"hi\"\\\n");
+        assertEquals("\"Say \\\"hi\\\"\\\\\\u000a\"", json.toString());
+    }
+
+    @Test
+    @Tag("load")
+    // concurrent clients against localhost, reporting latency percentiles
+    public void testLoadReportsLatencyPercentiles() throws Exception {
+        int clients = 8;
+        int requestsPerClient = 250;
+        List<String> paths = new ArrayList<>();
+        for (User user : recSys.getUsers()) {
+            paths.add("/users/" + user.getId() + "/recommendations");
+        }
+        for (String movieId : recSys.getMovieIdMap().keySet()) {
+            paths.add("/movies/" + movieId + "/similar");
+        }
+        for (int i = 0; i < 200; i++) { // Warm up
+            assertEquals(200, get(paths.get(i % paths.size())).statusCode());
+        }
+
+        ExecutorService clientThreads = Executors.newFixedThreadPool(clients);
+        try {
+            List<Callable<long[]>> work = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                int first = c;
+                work.add(() -> {
+                    long[] nanos = new long[requestsPerClient];
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        long start = System.nanoTime();
+                        HttpResponse<String> response = get(paths.get((first + i) % paths.size()));
+                        nanos[i] = System.nanoTime() - start;
+                        assertEquals(200, response.statusCode());
+                    }
+                    return nanos;
+                });
+            }
+            long[] latencies = new long[clients * requestsPerClient];
+            int count = 0;
+            for (Future<long[]> done : clientThreads.invokeAll(work)) {
+                for (long nanos : done.get()) {
+                    latencies[count++] = nanos;
+                }
+            }
+            Arrays.sort(latencies);
+            long p50 = latencies[latencies.length / 2];
+            long p99 = latencies[(int) (latencies.length * 0.99)];
+            System.out.printf("Load test: %d requests from %d clients, p50 %.2f ms, p99 %.2f ms%n",
+                    latencies.length, clients, p50 / 1e6, p99 / 1e6);
+            assertTrue(p50 <= p99);
+        } finally {
+            clientThreads.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.reelrec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecommendationShardsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    // more shards than users leaves some shards empty, and merging still restores the order
+    public void testWriteAndMergeInOrder() throws IOException {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(new User("User " + i, "1234567" + i + "A"));
+        }
+        String output = tempDir.resolve("recommendations.txt").toString();
+        List<String> shardPaths = RecommendationShards.shardPaths(output, 8);
+        assertEquals(output + ".shard-007", shardPaths.get(7));
+
+        RecommendationSystem recSys = new RecommendationSystem();
+        int written = RecommendationShards.write(recSys, users, shardPaths, ForkJoinPool.commonPool(),
+                (user, e) -> fail(e));
+        assertEquals(5, written);
+
+        Path expected = tempDir.resolve("expected.txt");
+        try (RecommendationWriter writer = new RecommendationWriter(expected.toString(), false)) {
+            writer.write(new User("Header", "0"), new ArrayList<>());
+            for (User user : users) {
+                writer.write(user, new ArrayList<>());
+            }
+        }
+        try (RecommendationWriter writer = new RecommendationWriter(output, false)) {
+            writer.write(new User("Header", "0"), new ArrayList<>());
+        }
+        RecommendationShards.merge(shardPaths, output, true);
+        assertEquals(Files.readString(expected), Files.readString(Path.of(output)));
+
+        // Without appending the output is replaced
+        RecommendationShards.merge(shardPaths.subList(0, 2), output, false);
+        assertEquals(Files.readString(Path.of(shardPaths.get(0))) + Files.readString(Path.of(shardPaths.get(1))),
+                Files.readString(Path.of(output)));
+    }
+}
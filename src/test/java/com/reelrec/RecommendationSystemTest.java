@@ -1,16 +1,25 @@
 package com.reelrec;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class RecommendationSystemTest {
@@ -139,6 +148,106 @@ public class RecommendationSystemTest {
         );
     }
     
+    @Test
+    // recommendations are grouped by the user's genres in first-watched order, without duplicates
+    public void testRecommendMoviesForUserOrder() {
+        User user = new User("Ordered User", "ORD001");
+        user.addToWatchList(movie3);  // Action, Thriller
+        user.addToWatchList(movie2);  // Comedy, Drama
+
+        List<Movie> recommendations = recommendationSystem.recommendMoviesForUser(user);
+
+        assertEquals(Arrays.asList(movie1, movie5, movie4), recommendations,
+                "Action first, then Comedy, then Drama movies not listed yet");
+        assertEquals(Arrays.asList("Action", "Thriller", "Comedy", "Drama"), recommendationSystem.getUserCategories());
+    }
+    
+    @Test
+    // ranking recommendations by shared genres and keeping only the best k
+    public void testRecommendTopKMoviesForUser() {
+        User user = new User("Ranked User", "RNK001");
+        user.addToWatchList(movie3);  // Action, Thriller
+        user.addToWatchList(movie2);  // Comedy, Drama
+
+        // movie1 shares Action and Drama, movie5 and movie4 share one genre each
+        assertAll(
+                () -> assertEquals(Arrays.asList(movie1), recommendationSystem.recommendMoviesForUser(user, 1)),
+                () -> assertEquals(Arrays.asList(movie1, movie5), recommendationSystem.recommendMoviesForUser(user, 2)),
+                () -> assertEquals(Arrays.asList(movie1, movie5, movie4), recommendationSystem.recommendMoviesForUser(user, 10)),
+                () -> assertTrue(recommendationSystem.recommendMoviesForUser(user, 0).isEmpty(), "k = 0 should return nothing"),
+                () -> assertTrue(recommendationSystem.recommendMoviesForUser(null, 3).isEmpty(), "Should return empty list for null user")
+        );
+        assertThrows(IllegalArgumentException.class, () -> recommendationSystem.recommendMoviesForUser(user, -1));
+    }
+    
+    @Test
+    // batch recommendations come back in the users' order, same as one by one
+    public void testRecommendMoviesForUsers() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            User user = new User("Batch User " + i, "BATCH" + i);
+            user.addToWatchList(i % 2 == 0 ? movie3 : movie5);
+            if (i % 3 == 0) {
+                user.addToWatchList(movie2);
+            }
+            users.add(user);
+        }
+        users.add(new User("Empty User", "EMPTY002"));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<List<Movie>> batch = recommendationSystem.recommendMoviesForUsers(users, pool);
+            assertEquals(users.size(), batch.size(), "Should return one list per user");
+            for (int i = 0; i < users.size(); i++) {
+                assertEquals(recommendationSystem.recommendMoviesForUser(users.get(i)), batch.get(i),
+                        "Batch result " + i + " should match the single-user result");
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(recommendationSystem.recommendMoviesForUsers(new ArrayList<>()).isEmpty());
+    }
+    
+    @Test
+    // per-call results stay correct when several threads query the same system
+    public void testGetRecommendationsConcurrently() throws Exception {
+        User actionUser = new User("Action User", "ACT001");
+        actionUser.addToWatchList(movie3);  // Action, Thriller
+        User familyUser = new User("Family User", "FAM001");
+        familyUser.addToWatchList(movie5);  // Comedy, Family
+
+        Recommendations expectedAction = recommendationSystem.getRecommendations(actionUser);
+        Recommendations expectedFamily = recommendationSystem.getRecommendations(familyUser);
+        assertEquals(Arrays.asList(movie1), expectedAction.getMovies());
+        assertEquals(Arrays.asList("Action", "Thriller"), expectedAction.getCategories());
+        assertEquals(Arrays.asList(movie2), expectedFamily.getMovies());
+        assertEquals(Arrays.asList("Comedy", "Family"), expectedFamily.getCategories());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> checks = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                User user = i % 2 == 0 ? actionUser : familyUser;
+                Recommendations expected = i % 2 == 0 ? expectedAction : expectedFamily;
+                checks.add(executor.submit(() -> {
+                    for (int round = 0; round < 500; round++) {
+                        Recommendations actual = recommendationSystem.getRecommendations(user);
+                        if (!actual.getMovies().equals(expected.getMovies())
+                                || !actual.getCategories().equals(expected.getCategories())) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> check : checks) {
+                assertTrue(check.get(), "Concurrent queries should not see each other's state");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
     @Test
     // finding movies similar to a given reference movie
     public void testRecommendSimilarMovies() {
@@ -181,6 +290,45 @@ public class RecommendationSystemTest {
                 () -> assertTrue(actionMovies.contains(movie3), "Should contain movie3"));
     }
     
+    @Test
+    // similar movies are grouped by the reference movie's genres, without duplicates
+    public void testRecommendSimilarMoviesOrder() {
+        // movie2 is Comedy, Drama
+        List<Movie> similarMovies = recommendationSystem.recommendSimilarMovies(movie2);
+
+        assertEquals(Arrays.asList(movie5, movie1, movie4), similarMovies,
+                "Comedy movies first, then Drama movies not listed yet");
+    }
+
+    @Test
+    // movies keep their load order across genres and across several loaded files
+    public void testLoadMoviesFromFileKeepsLoadOrder() throws IOException {
+        String firstFilePath = "src/test/resources/test_movies_first.txt";
+        String secondFilePath = "src/test/resources/test_movies_second.txt";
+        Files.write(Paths.get(firstFilePath),
+                    Arrays.asList("Zodiac, Z001", "Crime, Drama",
+                                "Alien, A002", "Horror, SciFi"));
+        Files.write(Paths.get(secondFilePath),
+                    Arrays.asList("Memento, M003", "Drama, Thriller",
+                                "Brazil, B004", "SciFi, Drama"));
+
+        RecommendationSystem testSystem = new RecommendationSystem();
+        testSystem.loadMoviesFromFile(firstFilePath, new ArrayList<>());
+        testSystem.loadMoviesFromFile(secondFilePath, new ArrayList<>());
+
+        List<String> dramaIds = new ArrayList<>();
+        for (Movie movie : testSystem.getMoviesByCategory("Drama")) {
+            dramaIds.add(movie.getID());
+        }
+        assertEquals(Arrays.asList("Z001", "M003", "B004"), dramaIds, "Drama movies should be in load order");
+        assertEquals(Arrays.asList(testSystem.getMovieById("A002")),
+                testSystem.recommendSimilarMovies(testSystem.getMovieById("B004")).subList(0, 1),
+                "SciFi movies come before Drama movies for Brazil");
+
+        Files.delete(Paths.get(firstFilePath));
+        Files.delete(Paths.get(secondFilePath));
+    }
+    
     @Test
     public void testGetUsers() {
         // Initial test with empty users list
@@ -329,4 +477,349 @@ public class RecommendationSystemTest {
         Files.delete(Paths.get(tempMovieFilePath));
         Files.delete(Paths.get(tempUserFilePath));
     }
-}
\ No newline at end of file
+
+    @Test
+    // the single-read loaders give the same errors and state as validating and loading separately
+    public void testLoadAndValidateMatchesTwoPassLoading() throws IOException {
+        String moviesPath = "src/test/resources/Longermovieswitherrors.txt";
+        String usersPath = "src/test/resources/longeruserswitherrors.txt";
+
+        Validator twoPassValidator = new Validator();
+        List<String> movieErrors = twoPassValidator.parseAndValidateMovies(moviesPath);
+        List<String> userErrors = twoPassValidator.parseAndValidateUsers(usersPath);
+        RecommendationSystem twoPass = new RecommendationSystem();
+        twoPass.loadMoviesFromFile(moviesPath, twoPassValidator.extractErrorLines(movieErrors));
+        twoPass.loadUsersFromFile(usersPath, new ArrayList<>(), twoPassValidator.getValidMovieIds());
+
+        Validator singlePassValidator = new Validator();
+        RecommendationSystem singlePass = new RecommendationSystem();
+        assertEquals(movieErrors, Validator.render(singlePass.loadAndValidateMoviesFromFile(moviesPath, singlePassValidator)));
+        assertEquals(userErrors, Validator.render(singlePass.loadAndValidateUsersFromFile(usersPath, singlePassValidator)));
+
+        assertEquals(twoPass.getMovieIdMap().keySet(), singlePass.getMovieIdMap().keySet());
+        assertEquals(twoPass.getUsers().size(), singlePass.getUsers().size());
+        for (int i = 0; i < twoPass.getUsers().size(); i++) {
+            User expected = twoPass.getUsers().get(i);
+            User actual = singlePass.getUsers().get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getErrorMessage(), actual.getErrorMessage());
+            assertEquals(expected.getWatchList(), actual.getWatchList());
+            assertEquals(twoPass.recommendMoviesForUser(expected), singlePass.recommendMoviesForUser(actual));
+        }
+    }
+
+    @Test
+    // loading in chunks gives the users of a line-by-line load, in order and with the same line numbers
+    public void testChunkedUsersLoadingMatchesSequential(@TempDir Path tempDir) throws IOException {
+        String moviesPath = "src/test/resources/Longermovieswitherrors.txt";
+        Validator validator = new Validator();
+        RecommendationSystem movies = new RecommendationSystem();
+        movies.loadAndValidateMoviesFromFile(moviesPath, validator);
+        Set<String> validMovieIds = validator.getValidMovieIds();
+        String someMovieId = validMovieIds.iterator().next();
+
+        // Blank lines, a record without a comma and a missing watch list shift the records
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            content.append("User ").append(i).append(", ").append(100000000 + i).append("A\r\n");
+            content.append(someMovieId).append(i % 3 == 0 ? ", BAD" + i : "").append('\n');
+            if (i % 37 == 0) {
+                content.append("\n");
+            }
+            if (i % 53 == 0) {
+                content.append("No comma here\nskipped\n");
+            }
+        }
+        content.append("Last User, 999999999A");
+        Path usersFile = tempDir.resolve("users.txt");
+        Files.write(usersFile, content.toString().getBytes());
+        BitSet invalidLines = new BitSet();
+        invalidLines.set(7);
+
+        RecommendationSystem sequential = new RecommendationSystem();
+        sequential.loadUsersInChunks(usersFile.toString(), invalidLines, validMovieIds, ForkJoinPool.commonPool(), 1);
+        for (int chunkCount : new int[] {2, 3, 7, 64, 5000}) {
+            RecommendationSystem chunked = new RecommendationSystem();
+            chunked.loadUsersInChunks(usersFile.toString(), invalidLines, validMovieIds, ForkJoinPool.commonPool(), chunkCount);
+            assertEquals(sequential.getUsers().size(), chunked.getUsers().size());
+            for (int i = 0; i < sequential.getUsers().size(); i++) {
+                User expected = sequential.getUsers().get(i);
+                User actual = chunked.getUsers().get(i);
+                assertEquals(expected.getName(), actual.getName());
+                assertEquals(expected.getId(), actual.getId());
+                assertEquals(expected.getErrorMessage(), actual.getErrorMessage());
+                assertEquals(expected.getWatchList(), actual.getWatchList());
+            }
+        }
+        assertEquals("ERROR: User has no movies at line " + (content.toString().split("\n").length + 1),
+                sequential.getUsers().get(sequential.getUsers().size() - 1).getErrorMessage());
+    }
+
+    @Test
+    public void testLoadAndValidateMissingFile() {
+        RecommendationSystem testSystem = new RecommendationSystem();
+        List<ValidationError> errors = testSystem.loadAndValidateMoviesFromFile("src/test/resources/missing_movies.txt", new Validator());
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).isCritical());
+        assertEquals("ERROR: File not found or cannot be read", errors.get(0).message());
+        assertTrue(testSystem.getMovieIdMap().isEmpty());
+    }
+
+    @Test
+    // the map constructor returns movies in the order of its category lists, not Movie order
+    public void testCategoryListOrder(@TempDir Path tempDir) throws IOException {
+        Movie zodiac = new Movie("Z001", "Zodiac");
+        Movie alien = new Movie("A002", "Alien");
+        Movie witness = new Movie("W003", "Witness");
+        Movie brazil = new Movie("B004", "Brazil");
+        TreeMap<Movie, List<String>> movies = new TreeMap<>();
+        movies.put(zodiac, List.of("Thriller"));
+        movies.put(alien, List.of("Thriller", "Drama"));
+        movies.put(witness, List.of("Thriller", "Drama"));
+        movies.put(brazil, List.of("Drama"));
+        TreeMap<String, List<Movie>> categories = new TreeMap<>();
+        categories.put("Thriller", List.of(zodiac, alien, witness));
+        categories.put("Drama", List.of(witness, brazil, alien));
+        RecommendationSystem system = new RecommendationSystem(movies, categories);
+
+        assertEquals(List.of(zodiac, alien, witness), system.getMoviesByCategory("Thriller"));
+        assertEquals(List.of(witness, brazil, alien), system.getMoviesByCategory("Drama"));
+        assertEquals(List.of(zodiac, alien, brazil), system.recommendSimilarMovies(witness));
+        User user = new User("Order User", "12345678O");
+        user.addToWatchList(witness);
+        assertEquals(List.of(zodiac, alien, brazil), system.recommendMoviesForUser(user));
+        assertEquals(List.of(alien, zodiac), system.recommendMoviesForUser(user, 2));
+
+        // Removing a movie and compacting the catalog for a load keeps the order too
+        assertTrue(system.removeMovie("A002", new Validator()));
+        Path moviesPath = tempDir.resolve("movies.txt");
+        Files.write(moviesPath, List.of("Network, N005", "Drama"));
+        system.loadMoviesFromFile(moviesPath.toString(), new BitSet());
+        assertEquals(List.of(zodiac, witness), system.getMoviesByCategory("Thriller"));
+        assertEquals(List.of(witness, brazil, system.getMovieById("N005")), system.getMoviesByCategory("Drama"));
+    }
+
+    @Test
+    // genres are told apart by spelling, so case variants can take a catalog past 64 genres
+    public void testMoreThan64CaseVariantGenres(@TempDir Path tempDir) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 70; i++) {
+            // 64 spellings of Action, then Comedy ones; the last two movies share theirs
+            String genre = caseVariant(i < 64 ? "action" : "comedy", i < 64 ? i : Math.min(i - 64, 4));
+            lines.add(String.format("Case Test, CT%03d", i + 1));
+            lines.add(genre + ", Drama");
+        }
+        Path moviesPath = tempDir.resolve("movies.txt");
+        Files.write(moviesPath, lines);
+
+        RecommendationSystem testSystem = new RecommendationSystem();
+        assertEquals(List.of(), testSystem.loadAndValidateMoviesFromFile(moviesPath.toString(), new Validator()));
+        assertEquals(70, testSystem.getMovieIdMap().size());
+        assertEquals(70, testSystem.getMoviesByCategory("Drama").size());
+        assertEquals(2, testSystem.getMoviesByCategory(caseVariant("comedy", 4)).size());
+
+        User user = new User("Case User", "12345678C");
+        user.addToWatchList(testSystem.getMovieById("CT070"));
+        assertEquals(List.of(testSystem.getMovieById("CT069")), testSystem.recommendMoviesForUser(user, 1));
+        assertEquals(69, testSystem.recommendMoviesForUser(user, 100).size());
+        assertEquals(69, testSystem.recommendSimilarMovies(testSystem.getMovieById("CT070")).size());
+
+        // Genres added after the load are indexed the same way
+        testSystem.addMovie("Case Test", "CT071", List.of(caseVariant("comedy", 4), caseVariant("comedy", 5)),
+                new Validator());
+        assertEquals(3, testSystem.getMoviesByCategory(caseVariant("comedy", 4)).size());
+        assertEquals(1, testSystem.getMoviesByCategory(caseVariant("comedy", 5)).size());
+        assertEquals(List.of(testSystem.getMovieById("CT069")), testSystem.recommendMoviesForUser(user, 1));
+    }
+
+    // The spelling of word with the letters set in bits upper-cased
+    private static String caseVariant(String word, int bits) {
+        StringBuilder variant = new StringBuilder(word);
+        for (int i = 0; i < word.length(); i++) {
+            if ((bits & 1 << i) != 0) {
+                variant.setCharAt(i, Character.toUpperCase(word.charAt(i)));
+            }
+        }
+        return variant.toString();
+    }
+
+    @Test
+    // a snapshot restores the same movies, users and recommendations, but only for the same sources
+    public void testSnapshotRoundTrip(@TempDir Path tempDir) throws IOException {
+        String moviesPath = "src/test/resources/Longermovieswitherrors.txt";
+        String usersPath = "src/test/resources/longeruserswitherrors.txt";
+        String snapshotPath = tempDir.resolve("catalog.snapshot").toString();
+        Validator validator = new Validator();
+        RecommendationSystem loaded = new RecommendationSystem();
+        loaded.loadAndValidateMoviesFromFile(moviesPath, validator);
+        loaded.loadAndValidateUsersFromFile(usersPath, validator);
+        byte[] sourceHash = CatalogSnapshot.sourceHash(moviesPath, usersPath);
+        loaded.saveSnapshot(snapshotPath, sourceHash);
+
+        RecommendationSystem restored = new RecommendationSystem();
+        assertTrue(restored.loadSnapshot(snapshotPath, sourceHash));
+        assertEquals(loaded.getMovieIdMap().keySet(), restored.getMovieIdMap().keySet());
+        assertEquals(loaded.getMoviesByCategory("Action"), restored.getMoviesByCategory("Action"));
+        assertEquals(loaded.getUsers().size(), restored.getUsers().size());
+        for (int i = 0; i < loaded.getUsers().size(); i++) {
+            User expected = loaded.getUsers().get(i);
+            User actual = restored.getUsers().get(i);
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getErrorMessage(), actual.getErrorMessage());
+            assertEquals(expected.getWatchList(), actual.getWatchList());
+            assertEquals(titles(loaded.recommendMoviesForUser(expected)), titles(restored.recommendMoviesForUser(actual)));
+        }
+
+        byte[] otherHash = CatalogSnapshot.sourceHash(moviesPath, "src/test/resources/longeruserswithnoerrors.txt");
+        RecommendationSystem stale = new RecommendationSystem();
+        assertFalse(stale.loadSnapshot(snapshotPath, otherHash));
+        assertFalse(stale.loadSnapshot(tempDir.resolve("missing.snapshot").toString(), sourceHash));
+        assertTrue(stale.getMovieIdMap().isEmpty());
+        assertTrue(stale.getUsers().isEmpty());
+    }
+
+    private static List<String> titles(List<Movie> movies) {
+        List<String> titles = new ArrayList<>();
+        for (Movie movie : movies) {
+            titles.add(movie.getName());
+        }
+        return titles;
+    }
+
+    @Test
+    // movies and users added one at a time give the same system as loading the files
+    public void testIncrementalUpdatesMatchLoadingFiles() throws IOException {
+        String moviesPath = "src/test/resources/longermovieswithnoerrors.txt";
+        String usersPath = "src/test/resources/longeruserswithnoerrors.txt";
+        RecommendationSystem loaded = new RecommendationSystem();
+        Validator fileValidator = new Validator();
+        loaded.loadAndValidateMoviesFromFile(moviesPath, fileValidator);
+        loaded.loadAndValidateUsersFromFile(usersPath, fileValidator);
+
+        RecommendationSystem built = new RecommendationSystem();
+        Validator validator = new Validator();
+        // Decoded like the mapped reader decodes non-ASCII lines
+        List<String> movieLines = new String(Files.readAllBytes(Paths.get(moviesPath)), Charset.defaultCharset())
+                .lines().toList();
+        for (int i = 0; i + 1 < movieLines.size(); i += 2) {
+            String[] titleAndId = movieLines.get(i).split(",", 2);
+            assertEquals(List.of(), built.addMovie(titleAndId[0], titleAndId[1],
+                    Arrays.asList(movieLines.get(i + 1).split(",")), validator));
+        }
+        List<String> userLines = Files.readAllLines(Paths.get(usersPath));
+        for (int i = 0; i + 1 < userLines.size(); i += 2) {
+            String[] nameAndId = userLines.get(i).split(",", 2);
+            List<String> watched = Arrays.asList(userLines.get(i + 1).split(","));
+            assertEquals(List.of(), built.addUser(nameAndId[0], nameAndId[1], watched.subList(0, 1), validator));
+            for (String movieId : watched.subList(1, watched.size())) {
+                assertEquals(List.of(), built.recordWatch(nameAndId[1].trim(), movieId, validator));
+            }
+        }
+
+        assertEquals(loaded.getMovieIdMap().keySet(), built.getMovieIdMap().keySet());
+        assertEquals(titles(loaded.getMoviesByCategory("Drama")), titles(built.getMoviesByCategory("Drama")));
+        assertEquals(loaded.getUsers().size(), built.getUsers().size());
+        for (int i = 0; i < loaded.getUsers().size(); i++) {
+            User expected = loaded.getUsers().get(i);
+            User actual = built.getUsers().get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getErrorMessage(), actual.getErrorMessage());
+            assertEquals(titles(expected.getWatchList()), titles(actual.getWatchList()));
+            assertEquals(titles(loaded.recommendMoviesForUser(expected)), titles(built.recommendMoviesForUser(actual)));
+        }
+    }
+
+    @Test
+    // a removed movie is gone from the catalog and from recommendations, and its ID can be reused
+    public void testRemoveMovie(@TempDir Path tempDir) throws IOException {
+        String moviesPath = "src/test/resources/longermovieswithnoerrors.txt";
+        String usersPath = "src/test/resources/longeruserswithnoerrors.txt";
+        Validator validator = new Validator();
+        RecommendationSystem system = new RecommendationSystem();
+        system.loadAndValidateMoviesFromFile(moviesPath, validator);
+        system.loadAndValidateUsersFromFile(usersPath, validator);
+        Map<String, Movie> before = system.getMovieIdMap();
+        int movies = before.size();
+        assertTrue(system.removeMovie("TDK003", validator));
+        assertFalse(system.removeMovie("TDK003", validator));
+        // A map returned earlier is part of the catalog it came from
+        assertNotNull(before.get("TDK003"));
+        assertEquals(movies, before.size());
+        assertEquals(movies - 1, system.getMovieIdMap().size());
+        assertFalse(system.getMovieIdMap().containsKey("TDK003"));
+
+        // Same recommendations as never having had the movie
+        List<String> movieLines = new ArrayList<>(Files.readAllLines(Paths.get(moviesPath)));
+        int record = movieLines.indexOf("The Dark Knight, TDK003");
+        movieLines.subList(record, record + 2).clear();
+        Path withoutMovie = Files.write(tempDir.resolve("movies.txt"), movieLines);
+        RecommendationSystem expected = new RecommendationSystem();
+        Validator expectedValidator = new Validator();
+        expected.loadAndValidateMoviesFromFile(withoutMovie.toString(), expectedValidator);
+        expected.loadAndValidateUsersFromFile(usersPath, expectedValidator);
+        assertNull(system.getMovieById("TDK003"));
+        assertEquals(titles(expected.getMoviesByCategory("Action")), titles(system.getMoviesByCategory("Action")));
+        for (int i = 0; i < system.getUsers().size(); i++) {
+            assertEquals(titles(expected.recommendMoviesForUser(expected.getUsers().get(i))),
+                    titles(system.recommendMoviesForUser(system.getUsers().get(i))));
+        }
+
+        // The snapshot leaves the removed movie out
+        String snapshotPath = tempDir.resolve("catalog.snapshot").toString();
+        system.saveSnapshot(snapshotPath, new byte[] {1});
+        RecommendationSystem restored = new RecommendationSystem();
+        assertTrue(restored.loadSnapshot(snapshotPath, new byte[] {1}));
+        assertEquals(titles(system.getMoviesByCategory("Action")), titles(restored.getMoviesByCategory("Action")));
+
+        assertEquals(List.of(), system.addMovie("The Dark Knight", "TDK003", List.of("Action"), validator));
+        assertTrue(titles(system.getMoviesByCategory("Action")).contains("The Dark Knight"));
+    }
+
+    @Test
+    // updates go through the same validation rules as loading the files
+    public void testIncrementalUpdatesAreValidated() {
+        Validator validator = new Validator();
+        RecommendationSystem system = new RecommendationSystem();
+        system.loadAndValidateMoviesFromFile("src/test/resources/longermovieswithnoerrors.txt", validator);
+        system.loadAndValidateUsersFromFile("src/test/resources/longeruserswithnoerrors.txt", validator);
+
+        List<ValidationError> errors = system.addMovie("the matrix", "TM111", List.of("Action"), validator);
+        assertEquals(ValidationError.Code.MOVIE_TITLE, errors.get(0).code());
+        assertNull(system.getMovieById("TM111"));
+        errors = system.addMovie("The Matrix", "TM001", List.of("Action"), validator);
+        assertEquals(ValidationError.Code.MOVIE_ID_NOT_UNIQUE, errors.get(0).code());
+        // An invalid genre leaves the movie without genres, like a bad genres line
+        errors = system.addMovie("The Matrix", "TM111", List.of("Action", "Cartoon"), validator);
+        assertEquals("ERROR: Movie genre \"Cartoon\" is not supported at line 2 in the movies file.", errors.get(0).message());
+        assertNotNull(system.getMovieById("TM111"));
+        assertFalse(titles(system.getMoviesByCategory("Action")).contains("The Matrix"));
+
+        errors = system.addUser("Bad Id", "123", List.of("TSR001"), validator);
+        assertTrue(errors.get(0).isUserIdError());
+        User badId = system.getUsers().get(system.getUsers().size() - 1);
+        assertEquals(errors.get(0).message(), badId.getErrorMessage());
+        assertTrue(badId.getWatchList().isEmpty());
+        errors = system.addUser("Again", "12345678X", List.of("TSR001"), validator);
+        assertEquals(ValidationError.Code.USER_ID_NOT_UNIQUE, errors.get(0).code());
+        assertSame(system.getUsers().get(0), system.getUserById("12345678X")); // The first user with the ID
+        assertSame(badId, system.getUserById("123"));
+
+        int watched = system.getUsers().get(0).getWatchList().size();
+        errors = system.recordWatch("12345678X", "NOPE999", validator);
+        assertEquals(ValidationError.Code.UNKNOWN_MOVIE, errors.get(0).code());
+        assertEquals(watched, system.getUsers().get(0).getWatchList().size());
+        assertEquals(List.of(), system.recordWatch("12345678X", "TM111", validator));
+        assertEquals(watched + 1, system.getUsers().get(0).getWatchList().size());
+        assertThrows(IllegalArgumentException.class, () -> system.recordWatch("00000000Z", "TSR001", validator));
+
+        // A movie the validator knows but the catalog no longer has is not recorded either
+        Validator stale = new Validator();
+        stale.validateMovies("src/test/resources/longermovieswithnoerrors.txt");
+        assertTrue(system.removeMovie("TSR001", validator));
+        errors = system.recordWatch("12345678X", "TSR001", stale);
+        assertEquals(ValidationError.Code.UNKNOWN_MOVIE, errors.get(0).code());
+        assertEquals(watched + 1, system.getUsers().get(0).getWatchList().size());
+        assertFalse(system.getUsers().get(0).getWatchList().contains(null));
+    }
+}
@@ -0,0 +1,80 @@
+package com.reelrec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecommendationWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    // one writer for many users produces the same text as writing each user separately
+    public void testWriteMatchesPerUserOutput() throws IOException {
+        Movie matrix = new Movie("TM001", "The Matrix");
+        Movie inception = new Movie("I002", "Inception");
+        User neo = new User("Neo", "12345678A");
+        User smith = new User("Agent Smith", "BAD_ID");
+        smith.setErrorMessage("ERROR: User Id \"BAD_ID\" is wrong at line 3 in the users file.");
+        List<User> users = Arrays.asList(neo, smith);
+        List<List<Movie>> recommendations = Arrays.asList(Arrays.asList(matrix, inception), new ArrayList<>());
+
+        Path perUser = tempDir.resolve("per_user.txt");
+        RecommendationSystem recSys = new RecommendationSystem();
+        for (int i = 0; i < users.size(); i++) {
+            recSys.writeRecommendationsToFile(users.get(i), recommendations.get(i), perUser.toString());
+        }
+
+        Path batched = tempDir.resolve("batched.txt");
+        try (RecommendationWriter writer = new RecommendationWriter(batched.toString(), false)) {
+            for (int i = 0; i < users.size(); i++) {
+                writer.write(users.get(i), recommendations.get(i));
+            }
+        }
+
+        String expected = String.join(System.lineSeparator(),
+                "Neo, 12345678A",
+                "The Matrix, Inception",
+                "",
+                "Agent Smith, BAD_ID",
+                "ERROR: User Id \"BAD_ID\" is wrong at line 3 in the users file.",
+                "No recommendations",
+                "",
+                "");
+        assertEquals(expected, Files.readString(batched));
+        assertEquals(expected, Files.readString(perUser));
+    }
+
+    @Test
+    // a user without a name or ID is written with "null", as the per-user output did
+    public void testNullUserFields() throws IOException {
+        Path output = tempDir.resolve("recommendations.txt");
+        try (RecommendationWriter writer = new RecommendationWriter(output.toString(), false)) {
+            writer.write(new User(null, null), Arrays.asList(new Movie("TM001", "The Matrix")));
+        }
+
+        assertEquals(Arrays.asList("null, null", "The Matrix", ""), Files.readAllLines(output));
+    }
+
+    @Test
+    public void testAppendKeepsExistingContent() throws IOException {
+        Path output = tempDir.resolve("recommendations.txt");
+        Files.writeString(output, "existing" + System.lineSeparator());
+
+        try (RecommendationWriter writer = new RecommendationWriter(output.toString(), true)) {
+            writer.write(new User("Trinity", "11112222T"), new ArrayList<>());
+        }
+
+        List<String> lines = Files.readAllLines(output);
+        assertEquals(Arrays.asList("existing", "Trinity, 11112222T", "No recommendations", ""), lines);
+    }
+}
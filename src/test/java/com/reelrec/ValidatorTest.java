@@ -4,6 +4,8 @@ package com.reelrec;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -420,4 +422,73 @@ public class ValidatorTest {
 
         assertEquals(expectedErrors, userErrors);
     }
+
+    @Test
+    public void testValidateMovies_StructuredErrors() {
+        String filepath = "src/test/resources/Longermovieswitherrors.txt";
+        List<ValidationError> errors = validator.validateMovies(filepath);
+
+        assertEquals(10, errors.size());
+        assertEquals(new ValidationError(ValidationError.Code.MOVIE_TITLE, filepath, 1, "The Shawshank redemption"), errors.get(0));
+        assertEquals(new ValidationError(ValidationError.Code.MOVIE_ID_LETTERS, filepath, 3, "TR002"), errors.get(1));
+        assertEquals(new ValidationError(ValidationError.Code.MOVIE_NO_GENRES, filepath, 8, null), errors.get(3));
+        assertEquals(new ValidationError(ValidationError.Code.MOVIE_ID_NOT_UNIQUE, filepath, 13, "TKS003"), errors.get(7));
+        assertEquals(Validator.render(errors), new Validator().parseAndValidateMovies(filepath));
+    }
+
+    @Test
+    public void testValidateUsers_UserIdErrors() {
+        validator.validateMovies("src/test/resources/longermovieswithnoerrors.txt");
+        List<ValidationError> errors = validator.validateUsers("src/test/resources/longeruserswitherrors.txt");
+
+        List<String> badIds = new ArrayList<>();
+        for (ValidationError error : errors) {
+            if (error.isUserIdError()) {
+                badIds.add(error.value());
+            }
+        }
+        assertEquals(List.of("1584H32", "87654321W"), badIds);
+    }
+
+    @Test
+    public void testValidateMovies_MissingFile() {
+        List<ValidationError> errors = validator.validateMovies("src/test/resources/missing_movies.txt");
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).isCritical());
+        assertEquals("ERROR: File not found or cannot be read", errors.get(0).message());
+    }
+
+    @Test
+    public void testErrorLines_MatchExtractErrorLines() {
+        List<ValidationError> errors = validator.validateMovies("src/test/resources/Longermovieswitherrors.txt");
+        BitSet lines = validator.errorLines(errors);
+
+        List<Integer> expected = validator.extractErrorLines(Validator.render(errors));
+        assertEquals(expected.size(), lines.cardinality());
+        for (int line : expected) {
+            assertTrue(lines.get(line));
+        }
+        assertTrue(lines.get(1) && lines.get(2)); // Bad first line skips the whole record
+        assertFalse(lines.get(7)); // Only the genres line of record 7-8 is bad
+    }
+
+    @Test
+    public void testcheckMovieTitle_DoubleSpace() {
+        assertEquals("ERROR: Movie Title \"The  Matrix\" is wrong", validator.checkMovieTitle("The  Matrix"));
+        assertEquals("", validator.checkMovieTitle("The\tMatrix"));
+    }
+
+    @Test
+    public void testCheckMovieId_TitleHasMoreCapitals() {
+        assertEquals("ERROR: Movie Id letters \"TM123\" are wrong", validator.checkMovieId("TM123", "The Matrix Reloaded"));
+        assertEquals("ERROR: Movie Id format \"TMR12\" is wrong", validator.checkMovieId("TMR12", "The Matrix Reloaded"));
+        assertEquals("", validator.checkMovieId("TMR123", "The Matrix Reloaded"));
+    }
+
+    @Test
+    public void testCheckMovieGenre_MixedCase() {
+        assertEquals("", validator.checkMovieGenre("sciFi"));
+        assertEquals("", validator.checkMovieGenre("Documentary"));
+        assertEquals("ERROR: Movie genre \"Sci-Fi\" is not supported", validator.checkMovieGenre("Sci-Fi"));
+    }
 }
@@ -1,6 +1,8 @@
 package com.reelrec.stubs;
 
+import com.reelrec.Movie;
 import com.reelrec.RecommendationSystem;
+import com.reelrec.RecommendationOutput;
 import com.reelrec.User;
 import java.io.IOException;
 import java.util.*;
@@ -40,8 +42,8 @@ public class StubRecommendationSystem extends RecommendationSystem {
     }
 
     @Override
-    public void writeRecommendationsToFile(User user, String outputPath) throws IOException {
-         System.out.println("STUB RECSYS: writeRecommendationsToFile called for user: " + user.getName() + " to path: " + outputPath);
+    public void writeRecommendations(RecommendationOutput writer, User user, List<Movie> recommendations) throws IOException {
+         System.out.println("STUB RECSYS: writeRecommendations called for user: " + user.getName());
         writeRecommendationsCallCount++;
         usersForWhichRecsWereWritten.add(user);
         if (throwWriteRecsErrorForUser) { // Simplified error simulation